@@ -0,0 +1,71 @@
+package com.dsahub.patterns.bench;
+
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * Option parsing and JSON output shared by the benchmarks, so every benchmark takes key=value arguments the same
+ * way and writes results files of the same shape: the JVM, the options used and one object per result.
+ */
+public final class BenchmarkReport {
+
+    private BenchmarkReport() {
+    }
+
+    /**
+     * Overwrites the defaults with key=value arguments; any key not in the defaults is rejected.
+     * @return the defaults map, updated in place
+     */
+    public static Map<String, String> parseOptions(Map<String, String> defaults, String[] args) {
+        for (String arg : args) {
+            int eq = arg.indexOf('=');
+            if (eq < 0 || !defaults.containsKey(arg.substring(0, eq))) {
+                throw new IllegalArgumentException("unknown option: " + arg + " (known: " + defaults.keySet() + ")");
+            }
+            defaults.put(arg.substring(0, eq), arg.substring(eq + 1));
+        }
+        return defaults;
+    }
+
+    public static void writeJson(Path out, Map<String, String> options, List<Map<String, Object>> results)
+            throws IOException {
+        try (PrintWriter w = new PrintWriter(Files.newBufferedWriter(out))) {
+            w.println("{");
+            w.println("  \"jvm\": " + quote(System.getProperty("java.vm.name") + " "
+                    + System.getProperty("java.version")) + ",");
+            w.println("  \"processors\": " + Runtime.getRuntime().availableProcessors() + ",");
+            w.println("  \"options\": {");
+            int i = 0;
+            for (Map.Entry<String, String> e : options.entrySet()) {
+                w.print("    " + quote(e.getKey()) + ": " + quote(e.getValue()));
+                w.println(++i < options.size() ? "," : "");
+            }
+            w.println("  },");
+            w.println("  \"results\": [");
+            for (int r = 0; r < results.size(); r++) {
+                w.println("    {");
+                int j = 0;
+                Map<String, Object> result = results.get(r);
+                for (Map.Entry<String, Object> e : result.entrySet()) {
+                    Object v = e.getValue();
+                    String json = v instanceof String ? quote((String) v)
+                            : v instanceof Double ? String.format(Locale.ROOT, "%.3f", v) : String.valueOf(v);
+                    w.print("      " + quote(e.getKey()) + ": " + json);
+                    w.println(++j < result.size() ? "," : "");
+                }
+                w.println(r + 1 < results.size() ? "    }," : "    }");
+            }
+            w.println("  ]");
+            w.println("}");
+        }
+    }
+
+    private static String quote(String s) {
+        return "\"" + s.replace("\\", "\\\\").replace("\"", "\\\"") + "\"";
+    }
+}
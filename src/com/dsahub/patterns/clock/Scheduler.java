@@ -0,0 +1,29 @@
+package com.dsahub.patterns.clock;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Source of time and timed execution for time-driven components. Components take one at construction instead
+ * of calling System.nanoTime() and Thread.sleep() directly, so the same code runs against the wall clock
+ * (SystemScheduler) or against a VirtualScheduler that jumps straight from one task to the next.
+ */
+public interface Scheduler {
+
+    interface Cancellable {
+        /**
+         * @return false if the task already ran or was already cancelled
+         */
+        boolean cancel();
+    }
+
+    /**
+     * Monotonic time in nanoseconds, comparable only with other values from the same scheduler.
+     */
+    long nanoTime();
+
+    Cancellable schedule(Runnable task, long delay, TimeUnit unit);
+
+    default void execute(Runnable task) {
+        schedule(task, 0, TimeUnit.NANOSECONDS);
+    }
+}
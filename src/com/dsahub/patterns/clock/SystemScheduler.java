@@ -0,0 +1,45 @@
+package com.dsahub.patterns.clock;
+
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Wall-clock scheduler running its tasks, in deadline order, on one named thread.
+ * The thread is started on demand and exits after a second without work, so an idle scheduler
+ * neither costs a thread nor keeps the JVM alive.
+ */
+public class SystemScheduler implements Scheduler {
+
+    private final ScheduledThreadPoolExecutor executor;
+
+    public SystemScheduler(String threadName) {
+        this.executor = new ScheduledThreadPoolExecutor(1, r -> new Thread(r, threadName));
+        this.executor.setRemoveOnCancelPolicy(true);
+        this.executor.setKeepAliveTime(1, TimeUnit.SECONDS);
+        this.executor.allowCoreThreadTimeOut(true);
+    }
+
+    @Override
+    public long nanoTime() {
+        return System.nanoTime();
+    }
+
+    @Override
+    public Cancellable schedule(Runnable task, long delay, TimeUnit unit) {
+        ScheduledFuture<?> future = executor.schedule(() -> {
+            try {
+                task.run();
+            } catch (RuntimeException | Error e) {
+                // the executor would hide this in the future nobody reads; report it like a dying thread would
+                Thread t = Thread.currentThread();
+                t.getUncaughtExceptionHandler().uncaughtException(t, e);
+            }
+        }, delay, unit);
+        return () -> future.cancel(false);
+    }
+
+    public void shutdown() {
+        executor.shutdownNow();
+    }
+}
@@ -0,0 +1,109 @@
+package com.dsahub.patterns.clock;
+
+import java.util.PriorityQueue;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Deterministic scheduler for simulation: time stands still until advanceBy/runUntil is called, then the clock
+ * jumps to each due task in turn and runs it on the calling thread. Tasks with the same deadline run in the order
+ * they were scheduled, so a run is repeatable, and an hour of schedule takes as long as its tasks' CPU time.
+ * Tasks may schedule further tasks; those run in the same call if they fall due before its end.
+ */
+public class VirtualScheduler implements Scheduler {
+
+    private final class Entry implements Cancellable, Comparable<Entry> {
+        final long deadline;
+        final long order;
+        final Runnable task;
+
+        Entry(long deadline, long order, Runnable task) {
+            this.deadline = deadline;
+            this.order = order;
+            this.task = task;
+        }
+
+        @Override
+        public boolean cancel() {
+            synchronized (VirtualScheduler.this) {
+                return queue.remove(this);
+            }
+        }
+
+        @Override
+        public int compareTo(Entry other) {
+            int c = Long.compare(deadline, other.deadline);
+            return c != 0 ? c : Long.compare(order, other.order);
+        }
+    }
+
+    private final PriorityQueue<Entry> queue = new PriorityQueue<>();
+    private long now;
+    private long order;
+    private long executed;
+
+    public VirtualScheduler() {
+        this(0);
+    }
+
+    public VirtualScheduler(long startNanos) {
+        this.now = startNanos;
+    }
+
+    @Override
+    public synchronized long nanoTime() {
+        return now;
+    }
+
+    @Override
+    public synchronized Cancellable schedule(Runnable task, long delay, TimeUnit unit) {
+        Entry entry = new Entry(now + Math.max(0, unit.toNanos(delay)), order++, task);
+        queue.add(entry);
+        return entry;
+    }
+
+    /**
+     * Runs every task due within the next {@code duration} of virtual time and leaves the clock at its end.
+     * @return the number of tasks run
+     */
+    public int advanceBy(long duration, TimeUnit unit) {
+        long end;
+        synchronized (this) {
+            end = now + unit.toNanos(duration);
+        }
+        return runUntil(end);
+    }
+
+    /**
+     * Runs every task due at or before {@code deadlineNanos} and leaves the clock there.
+     * @return the number of tasks run
+     */
+    public int runUntil(long deadlineNanos) {
+        int ran = 0;
+        while (true) {
+            Entry next;
+            synchronized (this) {
+                next = queue.peek();
+                if (next == null || next.deadline - deadlineNanos > 0) {
+                    if (deadlineNanos - now > 0) {
+                        now = deadlineNanos;
+                    }
+                    return ran;
+                }
+                queue.poll();
+                now = next.deadline;
+                executed++;
+            }
+            // outside the lock, so a task may schedule, cancel or read the time
+            next.task.run();
+            ran++;
+        }
+    }
+
+    public synchronized int getPendingTasks() {
+        return queue.size();
+    }
+
+    public synchronized long getExecutedTasks() {
+        return executed;
+    }
+}
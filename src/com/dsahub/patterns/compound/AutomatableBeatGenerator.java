@@ -0,0 +1,13 @@
+package com.dsahub.patterns.compound;
+
+/**
+ * A generator that can follow a TempoCurve on its own, computing the spacing of every beat from the curve
+ * instead of waiting for a setBPM call per step.
+ */
+public interface AutomatableBeatGenerator extends BeatGenerator {
+    /**
+     * @param curve      the tempo plan, or null to stop following one and keep the current tempo
+     * @param startNanos nanoTime() of this generator that corresponds to time 0 of the curve
+     */
+    void setTempoCurve(TempoCurve curve, long startNanos);
+}
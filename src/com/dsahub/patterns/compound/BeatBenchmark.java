@@ -0,0 +1,251 @@
+package com.dsahub.patterns.compound;
+
+import com.dsahub.patterns.bench.BenchmarkReport;
+
+import java.lang.management.GarbageCollectorMXBean;
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Headless load and jitter benchmark for the compound package: builds N BeatModels with M observers each,
+ * ramps the tempo through a DJController per model, and reports throughput, jitter and delivery-latency
+ * percentiles, missed beats and GC activity for every generator implementation. Results are printed and
+ * written as JSON.
+ *
+ * Usage: BeatBenchmark [key=value ...]
+ *   generators=simple,deadline,wheel,virtual  models=100  observers=4  seconds=20  warmup=3
+ *   bpmFrom=60  bpmTo=240  rampSteps=8  workMicros=0  out=beat-benchmark.json
+ */
+public class BeatBenchmark {
+
+    private static final long NANOS_PER_MINUTE = TimeUnit.MINUTES.toNanos(1);
+
+    /**
+     * Measures how far each inter-beat interval is from the period implied by the current BPM.
+     * The intervals around a tempo change are not comparable and are skipped.
+     */
+    private static class JitterProbe implements BeatEventObserver {
+        private final LatencyHistogram jitter;
+        private final LongAdder beats;
+        private volatile long expectedPeriod;
+        private volatile int skipIntervals = 1;
+        private long lastBeat;
+
+        JitterProbe(LatencyHistogram jitter, LongAdder beats) {
+            this.jitter = jitter;
+            this.beats = beats;
+        }
+
+        void tempo(int bpm) {
+            expectedPeriod = NANOS_PER_MINUTE / bpm;
+            // the beat in flight may still use the old tempo, the one after it is re-targeted
+            skipIntervals = 2;
+        }
+
+        @Override
+        public void updateBeat(long sequence, long scheduledNanos, long dispatchNanos) {
+            long now = System.nanoTime();
+            beats.increment();
+            if (skipIntervals > 0) {
+                skipIntervals--;
+            } else {
+                jitter.record(Math.abs((now - lastBeat) - expectedPeriod));
+            }
+            lastBeat = now;
+        }
+    }
+
+    public static void main(String[] args) throws Exception {
+        Map<String, String> options = new LinkedHashMap<>();
+        options.put("generators", "simple,deadline,wheel,virtual");
+        options.put("models", "100");
+        options.put("observers", "4");
+        options.put("seconds", "20");
+        options.put("warmup", "3");
+        options.put("bpmFrom", "60");
+        options.put("bpmTo", "240");
+        options.put("rampSteps", "8");
+        options.put("workMicros", "0");
+        options.put("out", "beat-benchmark.json");
+        BenchmarkReport.parseOptions(options, args);
+
+        List<Map<String, Object>> results = new ArrayList<>();
+        for (String generator : options.get("generators").split(",")) {
+            Map<String, Object> result = run(generator.trim(), options);
+            print(result);
+            results.add(result);
+        }
+        Path out = Paths.get(options.get("out"));
+        BenchmarkReport.writeJson(out, options, results);
+        System.out.println("Results written to " + out.toAbsolutePath());
+    }
+
+    static BeatGenerator newGenerator(String name) {
+        switch (name) {
+            case "simple":
+                return new SimpleThreadBeatGenerator();
+            case "deadline":
+                return new DeadlineBeatGenerator();
+            case "wheel":
+                return new WheelBeatGenerator();
+            case "virtual":
+                return new VirtualThreadBeatGenerator();
+            default:
+                throw new IllegalArgumentException("unknown generator: " + name);
+        }
+    }
+
+    private static Map<String, Object> run(String generatorName, Map<String, String> options) throws Exception {
+        int models = Integer.parseInt(options.get("models"));
+        int observers = Math.max(1, Integer.parseInt(options.get("observers")));
+        long seconds = Long.parseLong(options.get("seconds"));
+        long warmup = Long.parseLong(options.get("warmup"));
+        int bpmFrom = Integer.parseInt(options.get("bpmFrom"));
+        int bpmTo = Integer.parseInt(options.get("bpmTo"));
+        int rampSteps = Math.max(1, Integer.parseInt(options.get("rampSteps")));
+        long workNanos = TimeUnit.MICROSECONDS.toNanos(Long.parseLong(options.get("workMicros")));
+
+        LatencyHistogram jitter = new LatencyHistogram();
+        LongAdder beatCount = new LongAdder();
+        LongAdder deliveries = new LongAdder();
+        List<BeatModel> beatModels = new ArrayList<>(models);
+        List<DJController> controllers = new ArrayList<>(models);
+        List<JitterProbe> probes = new ArrayList<>(models);
+
+        ThreadMXBean threads = ManagementFactory.getThreadMXBean();
+        int threadsBefore = threads.getThreadCount();
+        for (int i = 0; i < models; i++) {
+            BeatGenerator generator = newGenerator(generatorName);
+            BeatModel model = new BeatModel(generator);
+            JitterProbe probe = new JitterProbe(jitter, beatCount);
+            model.registerBeatEventObserver(probe);
+            for (int j = 1; j < observers; j++) {
+                model.registerBeatEventObserver((sequence, scheduledNanos, dispatchNanos) -> {
+                    deliveries.increment();
+                    if (workNanos > 0) {
+                        long until = System.nanoTime() + workNanos;
+                        while (System.nanoTime() < until) {
+                            Thread.onSpinWait();
+                        }
+                    }
+                });
+            }
+            model.initialize();
+            DJController controller = new DJController(model);
+            probe.tempo(bpmFrom);
+            controller.setBPM(bpmFrom);
+            beatModels.add(model);
+            controllers.add(controller);
+            probes.add(probe);
+        }
+        for (DJController controller : controllers) {
+            controller.start();
+        }
+        Thread.sleep(TimeUnit.SECONDS.toMillis(warmup));
+        int threadsDuring = threads.getThreadCount();
+
+        jitter.reset();
+        beatCount.reset();
+        deliveries.reset();
+        for (BeatModel model : beatModels) {
+            model.getDeliveryLatency().reset();
+        }
+        long gcCountBefore = gcCount();
+        long gcTimeBefore = gcTime();
+        long start = System.nanoTime();
+
+        // ramp bpmFrom -> bpmTo in equal steps, integrating the beats the models should have produced
+        double expectedBeatsPerModel = 0;
+        long stepNanos = TimeUnit.SECONDS.toNanos(seconds) / rampSteps;
+        int bpm = bpmFrom;
+        long segmentStart = start;
+        for (int step = 0; step < rampSteps; step++) {
+            int next = rampSteps == 1 ? bpmFrom : bpmFrom + (bpmTo - bpmFrom) * step / (rampSteps - 1);
+            if (next != bpm) {
+                long now = System.nanoTime();
+                expectedBeatsPerModel += (double) (now - segmentStart) * bpm / NANOS_PER_MINUTE;
+                segmentStart = now;
+                bpm = next;
+                for (int i = 0; i < models; i++) {
+                    probes.get(i).tempo(bpm);
+                    controllers.get(i).setBPM(bpm);
+                }
+            }
+            TimeUnit.NANOSECONDS.sleep(start + (step + 1) * stepNanos - System.nanoTime());
+        }
+        long end = System.nanoTime();
+        expectedBeatsPerModel += (double) (end - segmentStart) * bpm / NANOS_PER_MINUTE;
+        // every model has exactly one probe, so the probes see every beat once
+        long beats = beatCount.sum();
+        long delivered = beats + deliveries.sum();
+        long gcCount = gcCount() - gcCountBefore;
+        long gcTime = gcTime() - gcTimeBefore;
+
+        for (DJController controller : controllers) {
+            controller.stop();
+        }
+
+        LatencyHistogram latency = new LatencyHistogram();
+        for (BeatModel model : beatModels) {
+            latency.add(model.getDeliveryLatency());
+        }
+        double elapsedSeconds = (end - start) / 1e9;
+        long expectedBeats = Math.round(expectedBeatsPerModel * models);
+
+        Map<String, Object> result = new LinkedHashMap<>();
+        result.put("generator", generatorName);
+        result.put("models", models);
+        result.put("observersPerModel", observers);
+        result.put("seconds", elapsedSeconds);
+        result.put("threadsBefore", threadsBefore);
+        result.put("threadsRunning", threadsDuring);
+        result.put("beats", beats);
+        result.put("expectedBeats", expectedBeats);
+        result.put("missedBeats", Math.max(0, expectedBeats - beats));
+        result.put("deliveriesPerSecond", delivered / elapsedSeconds);
+        result.put("jitterP50Micros", jitter.getValueAtPercentile(50) / 1e3);
+        result.put("jitterP99Micros", jitter.getValueAtPercentile(99) / 1e3);
+        result.put("jitterP999Micros", jitter.getValueAtPercentile(99.9) / 1e3);
+        result.put("jitterMaxMicros", jitter.getMax() / 1e3);
+        result.put("latencyP50Micros", latency.getValueAtPercentile(50) / 1e3);
+        result.put("latencyP99Micros", latency.getValueAtPercentile(99) / 1e3);
+        result.put("latencyP999Micros", latency.getValueAtPercentile(99.9) / 1e3);
+        result.put("gcCount", gcCount);
+        result.put("gcMillis", gcTime);
+        return result;
+    }
+
+    private static long gcCount() {
+        long total = 0;
+        for (GarbageCollectorMXBean gc : ManagementFactory.getGarbageCollectorMXBeans()) {
+            total += Math.max(0, gc.getCollectionCount());
+        }
+        return total;
+    }
+
+    private static long gcTime() {
+        long total = 0;
+        for (GarbageCollectorMXBean gc : ManagementFactory.getGarbageCollectorMXBeans()) {
+            total += Math.max(0, gc.getCollectionTime());
+        }
+        return total;
+    }
+
+    private static void print(Map<String, Object> result) {
+        System.out.println("--- " + result.get("generator") + " ---");
+        for (Map.Entry<String, Object> e : result.entrySet()) {
+            Object v = e.getValue();
+            System.out.println(String.format(Locale.ROOT, "%-20s %s", e.getKey(),
+                    v instanceof Double ? String.format(Locale.ROOT, "%.2f", v) : v));
+        }
+    }
+}
@@ -0,0 +1,16 @@
+package com.dsahub.patterns.compound;
+
+/**
+ * What an asynchronous beat observer's queue does when the observer falls behind and the queue is full.
+ */
+public enum BeatDeliveryPolicy {
+    /** Discard the oldest queued beat to make room for the new one. */
+    DROP_OLDEST,
+    /** Fold every beat that arrives while one is still pending into that single pending beat (capacity 1). */
+    COALESCE,
+    /**
+     * Make the beat thread wait for room, slowing the generator down to the observer's pace. Not allowed with a
+     * WheelBeatGenerator, whose beat thread is the wheel ticker shared by every model on that wheel.
+     */
+    BLOCK
+}
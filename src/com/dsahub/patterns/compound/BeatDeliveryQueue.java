@@ -0,0 +1,189 @@
+package com.dsahub.patterns.compound;
+
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.LongSupplier;
+
+/**
+ * Bounded per-observer beat queue with its own delivery thread. The beat thread only publishes into the queue;
+ * the wrapped observer runs on the delivery thread, so a slow observer can only delay itself.
+ * Queued beats keep their event metadata in preallocated ring arrays, so publishing does not allocate.
+ * COALESCE holds a single pending beat (capacity must be 1); the beats folded into it count as dropped and show up
+ * as a gap in the sequence numbers the observer receives.
+ */
+public class BeatDeliveryQueue implements BeatEventObserver, Runnable {
+
+    private static final AtomicInteger threadIds = new AtomicInteger();
+
+    private final BeatEventObserver observer;
+    private final BeatDeliveryPolicy policy;
+    private final int capacity;
+    private final LatencyHistogram deliveryLatency;
+    private final LongSupplier clock;
+
+    private final ReentrantLock lock = new ReentrantLock();
+    private final Condition notEmpty = lock.newCondition();
+    private final Condition notFull = lock.newCondition();
+    private final Thread thread;
+
+    // ring of queued beats, guarded by lock
+    private final long[] sequences;
+    private final long[] scheduled;
+    private final long[] dispatched;
+    private int head;
+    private int size;
+    private boolean closed;
+
+    private volatile long publishedBeats;
+    private volatile long deliveredBeats;
+    private volatile long droppedBeats;
+
+    public BeatDeliveryQueue(BeatEventObserver observer, BeatDeliveryPolicy policy, int capacity,
+                             LatencyHistogram deliveryLatency) {
+        this(observer, policy, capacity, deliveryLatency, System::nanoTime);
+    }
+
+    /**
+     * @param clock the clock the beats' scheduledNanos come from, used to measure delivery latency
+     */
+    public BeatDeliveryQueue(BeatEventObserver observer, BeatDeliveryPolicy policy, int capacity,
+                             LatencyHistogram deliveryLatency, LongSupplier clock) {
+        if (capacity <= 0) throw new IllegalArgumentException("capacity must be > 0");
+        if (policy == BeatDeliveryPolicy.COALESCE && capacity != 1) {
+            throw new IllegalArgumentException("COALESCE keeps one pending beat; capacity must be 1, not " + capacity);
+        }
+        this.observer = observer;
+        this.policy = policy;
+        this.capacity = capacity;
+        this.deliveryLatency = deliveryLatency;
+        this.clock = clock;
+        this.sequences = new long[this.capacity];
+        this.scheduled = new long[this.capacity];
+        this.dispatched = new long[this.capacity];
+        this.thread = new Thread(this, "BeatDelivery-" + threadIds.incrementAndGet());
+        this.thread.setDaemon(true);
+    }
+
+    void start() {
+        thread.start();
+    }
+
+    /**
+     * Stops delivery and waits for the observer to return from the beat it may be handling, unless the observer
+     * is closing its own queue.
+     */
+    void close() {
+        lock.lock();
+        try {
+            closed = true;
+            notEmpty.signalAll();
+            notFull.signalAll();
+        } finally {
+            lock.unlock();
+        }
+        if (Thread.currentThread() != thread && thread.isAlive()) {
+            try {
+                thread.join();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+
+    /**
+     * Called on the beat thread: enqueue one beat according to the policy and return.
+     */
+    @Override
+    public void updateBeat(long sequence, long scheduledNanos, long dispatchNanos) {
+        lock.lock();
+        try {
+            if (closed) return;
+            publishedBeats++;
+            if (size == capacity) {
+                if (policy == BeatDeliveryPolicy.BLOCK) {
+                    while (size == capacity && !closed) {
+                        notFull.await();
+                    }
+                    if (closed) return;
+                } else {
+                    // DROP_OLDEST evicts the head; COALESCE (capacity 1) replaces the pending beat with the newest
+                    head = (head + 1) % capacity;
+                    size--;
+                    droppedBeats++;
+                }
+            }
+            int tail = (head + size) % capacity;
+            sequences[tail] = sequence;
+            scheduled[tail] = scheduledNanos;
+            dispatched[tail] = dispatchNanos;
+            size++;
+            notEmpty.signal();
+        } catch (InterruptedException e) {
+            // the generator is stopping; give up on this beat
+            Thread.currentThread().interrupt();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    @Override
+    public void run() {
+        while (true) {
+            long sequence;
+            long scheduledNanos;
+            long dispatchNanos;
+            lock.lock();
+            try {
+                while (size == 0 && !closed) {
+                    notEmpty.awaitUninterruptibly();
+                }
+                if (closed) return;
+                sequence = sequences[head];
+                scheduledNanos = scheduled[head];
+                dispatchNanos = dispatched[head];
+                head = (head + 1) % capacity;
+                size--;
+                notFull.signal();
+            } finally {
+                lock.unlock();
+            }
+            deliveryLatency.record(clock.getAsLong() - scheduledNanos);
+            try {
+                observer.updateBeat(sequence, scheduledNanos, dispatchNanos);
+            } catch (RuntimeException e) {
+                e.printStackTrace();
+            }
+            deliveredBeats++;
+        }
+    }
+
+    public BeatDeliveryPolicy getPolicy() {
+        return policy;
+    }
+
+    public int getCapacity() {
+        return capacity;
+    }
+
+    public int getQueueDepth() {
+        lock.lock();
+        try {
+            return size;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public long getPublishedBeats() {
+        return publishedBeats;
+    }
+
+    public long getDeliveredBeats() {
+        return deliveredBeats;
+    }
+
+    public long getDroppedBeats() {
+        return droppedBeats;
+    }
+}
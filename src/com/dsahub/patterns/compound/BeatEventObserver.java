@@ -0,0 +1,15 @@
+package com.dsahub.patterns.compound;
+
+/**
+ * Beat observer that is told which beat it got and when. Unlike BeatObserver it can detect missed beats
+ * (gaps in the sequence) and measure how late a beat reached it (the generator's nanoTime() - scheduledNanos).
+ * The event is passed as primitives so notifying stays allocation-free.
+ */
+public interface BeatEventObserver {
+    /**
+     * @param sequence       beat number since the model was created, starting at 1 and increasing by one per beat
+     * @param scheduledNanos generator nanoTime() at which the generator scheduled the beat
+     * @param dispatchNanos  generator nanoTime() at which the model started dispatching it to observers
+     */
+    void updateBeat(long sequence, long scheduledNanos, long dispatchNanos);
+}
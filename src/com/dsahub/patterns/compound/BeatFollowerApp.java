@@ -0,0 +1,116 @@
+package com.dsahub.patterns.compound;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Loopback beat distribution demo. Start one master, then any number of followers in other JVMs:
+ *   BeatFollowerApp master [port=47474] [seconds=60]
+ *   BeatFollowerApp follower [port=47474] [seconds=30]
+ * A follower prints its clock estimate every few beats and its lateness percentiles at the end.
+ *   BeatFollowerApp check [port=47474] [seconds=2]
+ * runs a follower against a master in this JVM, restarts the master's model and then the whole master, and
+ * checks that the follower picks up every new master. Exits with 1 on failure.
+ */
+public class BeatFollowerApp {
+    public static void main(String[] args) throws Exception {
+        String role = args.length > 0 ? args[0] : "master";
+        int port = args.length > 1 ? Integer.parseInt(args[1]) : 47474;
+        if (role.equals("master")) {
+            runMaster(port, args.length > 2 ? Integer.parseInt(args[2]) : 60);
+        } else if (role.equals("check")) {
+            runCheck(port, args.length > 2 ? Integer.parseInt(args[2]) : 2);
+        } else {
+            runFollower(port, args.length > 2 ? Integer.parseInt(args[2]) : 30);
+        }
+    }
+
+    private static void runMaster(int port, int seconds) throws Exception {
+        BeatModel model = new BeatModel(new DeadlineBeatGenerator());
+        try (BeatPublisher publisher = new BeatPublisher(port)) {
+            model.registerBeatEventObserver(publisher);
+            model.registerBPMObserver(publisher);
+            DJController controller = new DJController(model);
+            model.initialize();
+            controller.setBPM(120);
+            controller.start();
+            System.out.println("Publishing beats on loopback port " + publisher.getPort());
+            long end = System.nanoTime() + TimeUnit.SECONDS.toNanos(seconds);
+            while (System.nanoTime() < end) {
+                Thread.sleep(5000);
+                System.out.printf("subscribers=%d packets=%d failed=%d%n", publisher.getSubscriberCount(),
+                        publisher.getSentPackets(), publisher.getFailedSends());
+            }
+            controller.stop();
+        }
+    }
+
+    private static void runCheck(int port, int seconds) throws Exception {
+        RemoteClockBeatGenerator generator = new RemoteClockBeatGenerator(port);
+        BeatModel follower = new BeatModel(generator);
+        follower.initialize();
+        follower.on();
+        boolean ok = true;
+        BeatPublisher publisher = new BeatPublisher(port);
+        try {
+            // the same master twice: its model restarts and counts from 1 again
+            for (int run = 1; run <= 2; run++) {
+                ok &= followed(generator, "model run " + run, publisher, seconds);
+            }
+        } finally {
+            publisher.close();
+        }
+        // a new master on the same port, as after a restart of its JVM
+        try (BeatPublisher restarted = new BeatPublisher(port)) {
+            ok &= followed(generator, "restarted master", restarted, seconds);
+        }
+        follower.off();
+        long restarts = generator.getMasterRestarts();
+        System.out.println("master restarts seen: " + restarts);
+        ok &= restarts == 2;
+        System.out.println(ok ? "PASS" : "FAIL");
+        System.exit(ok ? 0 : 1);
+    }
+
+    private static boolean followed(RemoteClockBeatGenerator generator, String what, BeatPublisher publisher,
+                                    int seconds) throws InterruptedException {
+        BeatModel master = new BeatModel(new DeadlineBeatGenerator());
+        master.registerBeatEventObserver(publisher);
+        master.registerBPMObserver(publisher);
+        master.initialize();
+        master.setBPM(600);
+        master.on();
+        // a follower subscribes with its next heartbeat
+        Thread.sleep(BeatPublisher.HEARTBEAT_MILLIS);
+        long before = generator.getBeatCount();
+        Thread.sleep(TimeUnit.SECONDS.toMillis(seconds));
+        long beats = generator.getBeatCount() - before;
+        master.off();
+        master.removeBeatEventObserver(publisher);
+        master.removeBPMObserver(publisher);
+        // 10 beats a second
+        boolean ok = beats >= seconds * 10L * 8 / 10;
+        System.out.printf("%s: follower fired %d beats in %d s%s%n", what, beats, seconds, ok ? "" : "  FAIL");
+        return ok;
+    }
+
+    private static void runFollower(int port, int seconds) throws Exception {
+        RemoteClockBeatGenerator generator = new RemoteClockBeatGenerator(port);
+        LatencyHistogram lateness = new LatencyHistogram();
+        generator.setLatenessListener(lateness::record);
+        BeatModel model = new BeatModel(generator);
+        model.registerBeatEventObserver((sequence, scheduledNanos, dispatchNanos) -> {
+            if (sequence % 8 == 0) {
+                System.out.printf("beat %d  master bpm %d  offset %d us  skew %.1f ppm  late %d us%n", sequence,
+                        generator.getMasterBPM(), generator.getOffsetNanos() / 1000, generator.getSkewPpm(),
+                        generator.getLastLatenessNanos() / 1000);
+            }
+        });
+        model.initialize();
+        model.on();
+        Thread.sleep(TimeUnit.SECONDS.toMillis(seconds));
+        model.off();
+        System.out.printf("beats=%d lost=%d lateness p50=%.1f us p99=%.1f us max=%.1f us%n",
+                generator.getBeatCount(), generator.getLostBeats(), lateness.getValueAtPercentile(50) / 1e3,
+                lateness.getValueAtPercentile(99) / 1e3, lateness.getMax() / 1e3);
+    }
+}
@@ -6,4 +6,19 @@ public interface BeatGenerator {
     void stop();
     void setBPM(int bpm);
     void setBeatListener(Runnable onBeat);
+
+    /**
+     * Generators that schedule against deadlines override this to report each beat's deadline;
+     * the default reports the time the beat actually fired.
+     */
+    default void setTimedBeatListener(TimedBeatListener listener) {
+        setBeatListener(() -> listener.onBeat(nanoTime()));
+    }
+
+    /**
+     * The clock beat times are read from: System.nanoTime() unless the generator runs on a Scheduler.
+     */
+    default long nanoTime() {
+        return System.nanoTime();
+    }
 }
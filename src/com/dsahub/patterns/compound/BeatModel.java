@@ -1,22 +1,33 @@
 package com.dsahub.patterns.compound;
 
-import java.util.List;
-import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
 
 public class BeatModel implements BeatModelInterface {
 
-    private final List<BeatObserver> beatObservers = new CopyOnWriteArrayList<>();
-    private final List<BPMObserver> bpmObservers = new CopyOnWriteArrayList<>();
+    private final ObserverList<BeatObserver> beatObservers = new ObserverList<>(new BeatObserver[0]);
+    private final ObserverList<BeatEventObserver> beatEventObservers = new ObserverList<>(new BeatEventObserver[0]);
+    private final ObserverList<BeatDeliveryQueue> queuedObservers = new ObserverList<>(new BeatDeliveryQueue[0]);
+    private final ObserverList<BPMObserver> bpmObservers = new ObserverList<>(new BPMObserver[0]);
+    private final Map<Object, BeatDeliveryQueue> deliveryQueues = new ConcurrentHashMap<>();
+    private final LatencyHistogram deliveryLatency = new LatencyHistogram();
 
-    private int bpm = 90;
+    private volatile int bpm = 90;
     private final BeatGenerator beatGenerator;
+    private volatile TempoCurve tempoCurve;
+    private volatile long tempoCurveStart;
+    private volatile long bpmNotifyIntervalNanos = TimeUnit.MILLISECONDS.toNanos(100);
+    // written only by the beat thread
+    private long beatSequence;
+    private long lastBpmNotifyNanos;
 
     public BeatModel(BeatGenerator generator) {
         this.beatGenerator = generator;
-        this.beatGenerator.setBeatListener(new Runnable() {
+        this.beatGenerator.setTimedBeatListener(new TimedBeatListener() {
             @Override
-            public void run() {
-                notifyBeatObservers();
+            public void onBeat(long scheduledNanos) {
+                notifyBeatObservers(scheduledNanos);
             }
         });
     }
@@ -40,6 +51,8 @@ public class BeatModel implements BeatModelInterface {
 
     @Override
     public void setBPM(int bpm) {
+        // an explicit tempo cancels automation (the generator drops its curve too)
+        this.tempoCurve = null;
         this.bpm = bpm;
         beatGenerator.setBPM(bpm);
         notifyBPMObservers();
@@ -50,14 +63,99 @@ public class BeatModel implements BeatModelInterface {
         return bpm;
     }
 
+    /**
+     * Hands a tempo plan to the generator, which spaces the beats from the curve itself. BPM observers are told
+     * about the automated tempo from the beat thread, at most once per BPM notify interval, plus once when the
+     * curve ends. A later setBPM cancels the automation.
+     */
+    public void automateTempo(TempoCurve curve) {
+        if (!(beatGenerator instanceof AutomatableBeatGenerator)) {
+            throw new UnsupportedOperationException(
+                    beatGenerator.getClass().getSimpleName() + " cannot follow a tempo curve");
+        }
+        long start = beatGenerator.nanoTime();
+        this.tempoCurveStart = start;
+        this.tempoCurve = curve;
+        ((AutomatableBeatGenerator) beatGenerator).setTempoCurve(curve, start);
+        this.bpm = (int) Math.round(curve.bpmAt(0));
+        notifyBPMObservers();
+    }
+
+    /**
+     * Minimum time between BPM notifications caused by tempo automation.
+     */
+    public void setBPMNotifyInterval(long interval, TimeUnit unit) {
+        this.bpmNotifyIntervalNanos = unit.toNanos(interval);
+    }
+
     @Override
     public void registerBeatObserver(BeatObserver o) {
         beatObservers.add(o);
     }
 
+    /**
+     * Registers an observer that is notified on its own delivery thread through a bounded queue,
+     * so it never holds up the beat thread (except under BLOCK) or the other observers.
+     */
+    public void registerBeatObserver(BeatObserver o, BeatDeliveryPolicy policy, int capacity) {
+        registerQueue(o, (sequence, scheduledNanos, dispatchNanos) -> o.updateBeat(), policy, capacity);
+    }
+
     @Override
     public void removeBeatObserver(BeatObserver o) {
-        beatObservers.remove(o);
+        if (!removeQueue(o)) {
+            beatObservers.remove(o);
+        }
+    }
+
+    public void registerBeatEventObserver(BeatEventObserver o) {
+        beatEventObservers.add(o);
+    }
+
+    public void registerBeatEventObserver(BeatEventObserver o, BeatDeliveryPolicy policy, int capacity) {
+        registerQueue(o, o, policy, capacity);
+    }
+
+    public void removeBeatEventObserver(BeatEventObserver o) {
+        if (!removeQueue(o)) {
+            beatEventObservers.remove(o);
+        }
+    }
+
+    /**
+     * The delivery queue (depth, drop and delivery counters) of an asynchronously registered observer, or null.
+     */
+    public BeatDeliveryQueue getBeatDeliveryQueue(Object observer) {
+        return deliveryQueues.get(observer);
+    }
+
+    /**
+     * Time from each beat's scheduled instant until an observer was handed that beat, recorded once per
+     * observer per beat (on the delivery thread for queued observers).
+     */
+    public LatencyHistogram getDeliveryLatency() {
+        return deliveryLatency;
+    }
+
+    private void registerQueue(Object key, BeatEventObserver target, BeatDeliveryPolicy policy, int capacity) {
+        if (policy == BeatDeliveryPolicy.BLOCK && beatGenerator instanceof WheelBeatGenerator) {
+            // waiting for room would stall the shared ticker, and with it every other model on the wheel
+            throw new IllegalArgumentException("BLOCK cannot be used with a WheelBeatGenerator");
+        }
+        BeatDeliveryQueue queue = new BeatDeliveryQueue(target, policy, capacity, deliveryLatency, beatGenerator::nanoTime);
+        if (deliveryQueues.putIfAbsent(key, queue) != null) {
+            throw new IllegalArgumentException("observer is already registered asynchronously");
+        }
+        queue.start();
+        queuedObservers.add(queue);
+    }
+
+    private boolean removeQueue(Object key) {
+        BeatDeliveryQueue queue = deliveryQueues.remove(key);
+        if (queue == null) return false;
+        queuedObservers.remove(queue);
+        queue.close();
+        return true;
     }
 
     @Override
@@ -70,14 +168,40 @@ public class BeatModel implements BeatModelInterface {
         bpmObservers.remove(o);
     }
 
-    private void notifyBeatObservers() {
-        for (BeatObserver o : beatObservers) {
+    private void notifyBeatObservers(long scheduledNanos) {
+        TempoCurve curve = tempoCurve;
+        if (curve != null) {
+            followTempo(curve, scheduledNanos);
+        }
+        long sequence = ++beatSequence;
+        long dispatchNanos = beatGenerator.nanoTime();
+        for (BeatDeliveryQueue q : queuedObservers.array()) {
+            q.updateBeat(sequence, scheduledNanos, dispatchNanos);
+        }
+        for (BeatEventObserver o : beatEventObservers.array()) {
+            deliveryLatency.record(beatGenerator.nanoTime() - scheduledNanos);
+            o.updateBeat(sequence, scheduledNanos, dispatchNanos);
+        }
+        for (BeatObserver o : beatObservers.array()) {
+            deliveryLatency.record(beatGenerator.nanoTime() - scheduledNanos);
             o.updateBeat();
         }
     }
 
+    private void followTempo(TempoCurve curve, long beatNanos) {
+        long elapsed = beatNanos - tempoCurveStart;
+        int current = (int) Math.round(curve.bpmAt(elapsed));
+        if (current == bpm) return;
+        boolean finished = elapsed >= curve.getDurationNanos();
+        if (finished || beatNanos - lastBpmNotifyNanos >= bpmNotifyIntervalNanos) {
+            lastBpmNotifyNanos = beatNanos;
+            bpm = current;
+            notifyBPMObservers();
+        }
+    }
+
     private void notifyBPMObservers() {
-        for (BPMObserver o : bpmObservers) {
+        for (BPMObserver o : bpmObservers.array()) {
             o.updateBPM(bpm);
         }
     }
@@ -0,0 +1,102 @@
+package com.dsahub.patterns.compound;
+
+import java.io.File;
+import java.lang.management.ManagementFactory;
+
+/**
+ * Allocation regression check for BeatModel's notify paths: after warm-up, firing beats and changing the BPM
+ * must not allocate on the calling thread. Exits with status 1 if they do.
+ * C2 escape analysis can hide short-lived garbage such as collection iterators, so the check re-launches
+ * itself with -XX:-DoEscapeAnalysis to see what the code itself allocates.
+ */
+public class BeatModelAllocationCheck {
+
+    private static final int WARMUP_ITERATIONS = 200_000;
+    private static final int MEASURED_ITERATIONS = 1_000_000;
+    // the MXBean calls themselves may allocate a little
+    private static final long TOLERATED_BYTES = 1024;
+    private static final String NO_ESCAPE_ANALYSIS = "-XX:-DoEscapeAnalysis";
+
+    /**
+     * Generator that fires beats synchronously on the caller, so the caller's allocation counter covers the
+     * whole notify path.
+     */
+    private static class ManualBeatGenerator implements BeatGenerator {
+        private Runnable onBeat;
+
+        @Override
+        public void initialize() {
+        }
+
+        @Override
+        public void start() {
+        }
+
+        @Override
+        public void stop() {
+        }
+
+        @Override
+        public void setBPM(int bpm) {
+        }
+
+        @Override
+        public void setBeatListener(Runnable onBeat) {
+            this.onBeat = onBeat;
+        }
+
+        void fire() {
+            onBeat.run();
+        }
+    }
+
+    private static long beats;
+    private static long bpmSum;
+
+    public static void main(String[] args) throws Exception {
+        if (!ManagementFactory.getRuntimeMXBean().getInputArguments().contains(NO_ESCAPE_ANALYSIS)) {
+            String java = System.getProperty("java.home") + File.separator + "bin" + File.separator + "java";
+            Process child = new ProcessBuilder(java, NO_ESCAPE_ANALYSIS,
+                    "-cp", System.getProperty("java.class.path"), BeatModelAllocationCheck.class.getName())
+                    .inheritIO()
+                    .start();
+            System.exit(child.waitFor());
+        }
+
+        com.sun.management.ThreadMXBean threads =
+                (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+        if (!threads.isThreadAllocatedMemorySupported()) {
+            System.out.println("Thread allocation accounting is not supported on this JVM; skipping.");
+            return;
+        }
+        threads.setThreadAllocatedMemoryEnabled(true);
+
+        ManualBeatGenerator generator = new ManualBeatGenerator();
+        BeatModel model = new BeatModel(generator);
+        for (int i = 0; i < 8; i++) {
+            model.registerBeatObserver(() -> beats++);
+            model.registerBeatEventObserver((sequence, scheduledNanos, dispatchNanos) -> beats++);
+            model.registerBPMObserver(bpm -> bpmSum += bpm);
+        }
+
+        run(model, generator, WARMUP_ITERATIONS);
+        long before = threads.getCurrentThreadAllocatedBytes();
+        run(model, generator, MEASURED_ITERATIONS);
+        long allocated = threads.getCurrentThreadAllocatedBytes() - before;
+
+        System.out.println("beats=" + beats + " bpmSum=" + bpmSum);
+        System.out.println("allocated " + allocated + " bytes over " + MEASURED_ITERATIONS + " beats + BPM changes");
+        if (allocated > TOLERATED_BYTES) {
+            System.out.println("FAIL: notify path allocates");
+            System.exit(1);
+        }
+        System.out.println("PASS");
+    }
+
+    private static void run(BeatModel model, ManualBeatGenerator generator, int iterations) {
+        for (int i = 0; i < iterations; i++) {
+            generator.fire();
+            model.setBPM(60 + (i & 127));
+        }
+    }
+}
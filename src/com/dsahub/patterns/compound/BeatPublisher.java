@@ -0,0 +1,182 @@
+package com.dsahub.patterns.compound;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.net.DatagramPacket;
+import java.net.DatagramSocket;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.SocketAddress;
+import java.net.SocketException;
+import java.net.SocketTimeoutException;
+import java.nio.ByteBuffer;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Sends every beat of a master BeatModel as one UDP datagram to each follower on the host.
+ * Followers (RemoteClockBeatGenerator) subscribe by sending HELLO datagrams to the publisher's port and
+ * repeat them as a heartbeat; a follower that stays silent for SUBSCRIPTION_TIMEOUT is dropped.
+ * Register it with the model as both a beat event observer and a BPM observer. Beats must come from a
+ * single thread (the model's beat thread), which reuses one packet buffer.
+ * Every beat carries the session of the master that sent it: the wall-clock microsecond the publisher started,
+ * renewed whenever the model's sequence numbers start over, so followers can tell a restarted master from
+ * reordered datagrams.
+ */
+public class BeatPublisher implements BeatEventObserver, BPMObserver, Closeable {
+
+    static final int MAGIC = 0x42454154; // "BEAT"
+    static final byte HELLO = 1;
+    static final byte BYE = 2;
+    static final byte BEAT = 3;
+    // magic, type, session, sequence, scheduledNanos, sendNanos, bpm
+    static final int BEAT_PACKET_SIZE = 4 + 1 + 8 + 8 + 8 + 8 + 4;
+    static final int CONTROL_PACKET_SIZE = 4 + 1;
+    static final long HEARTBEAT_MILLIS = 1000;
+    static final long SUBSCRIPTION_TIMEOUT_NANOS = TimeUnit.MILLISECONDS.toNanos(3 * HEARTBEAT_MILLIS);
+
+    // last session handed out in this JVM, bumped so that no two sessions share a microsecond
+    private static final AtomicLong SESSIONS = new AtomicLong();
+
+    private final DatagramSocket socket;
+    private final Thread receiver;
+    private final Map<SocketAddress, Long> lastSeen = new ConcurrentHashMap<>();
+    private volatile SocketAddress[] subscribers = new SocketAddress[0];
+    private volatile int bpm;
+    private volatile boolean closed;
+
+    // used only by the beat thread
+    private final byte[] beatBytes = new byte[BEAT_PACKET_SIZE];
+    private final ByteBuffer beatBuffer = ByteBuffer.wrap(beatBytes);
+    private final DatagramPacket beatPacket = new DatagramPacket(beatBytes, BEAT_PACKET_SIZE);
+    private long session = nextSession();
+    private long lastSequence;
+    private volatile long sentPackets;
+    private volatile long failedSends;
+
+    /**
+     * Listens on the loopback interface.
+     */
+    public BeatPublisher(int port) throws IOException {
+        this(new InetSocketAddress(InetAddress.getLoopbackAddress(), port));
+    }
+
+    public BeatPublisher(InetSocketAddress bindAddress) throws IOException {
+        this.socket = new DatagramSocket(bindAddress);
+        this.socket.setSoTimeout((int) HEARTBEAT_MILLIS);
+        this.receiver = new Thread(this::receiveSubscriptions, "BeatPublisher");
+        this.receiver.setDaemon(true);
+        this.receiver.start();
+    }
+
+    public int getPort() {
+        return socket.getLocalPort();
+    }
+
+    public int getSubscriberCount() {
+        return subscribers.length;
+    }
+
+    public long getSentPackets() {
+        return sentPackets;
+    }
+
+    public long getFailedSends() {
+        return failedSends;
+    }
+
+    @Override
+    public void updateBPM(int bpm) {
+        this.bpm = bpm;
+    }
+
+    @Override
+    public void updateBeat(long sequence, long scheduledNanos, long dispatchNanos) {
+        if (sequence <= lastSequence) {
+            // a new model counting from 1 again; to the followers that is a new master
+            session = nextSession();
+        }
+        lastSequence = sequence;
+        SocketAddress[] targets = subscribers;
+        if (targets.length == 0 || closed) return;
+        beatBuffer.clear();
+        beatBuffer.putInt(MAGIC).put(BEAT).putLong(session).putLong(sequence).putLong(scheduledNanos)
+                .putLong(System.nanoTime()).putInt(bpm);
+        for (SocketAddress target : targets) {
+            beatPacket.setSocketAddress(target);
+            try {
+                socket.send(beatPacket);
+                sentPackets++;
+            } catch (IOException e) {
+                // one unreachable follower must not stop the beat for the others; it expires on its own
+                failedSends++;
+            }
+        }
+    }
+
+    @Override
+    public void close() {
+        closed = true;
+        socket.close();
+        try {
+            receiver.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private static long nextSession() {
+        long now = TimeUnit.MILLISECONDS.toMicros(System.currentTimeMillis());
+        return SESSIONS.accumulateAndGet(now, (last, wall) -> Math.max(last + 1, wall));
+    }
+
+    private void receiveSubscriptions() {
+        byte[] bytes = new byte[CONTROL_PACKET_SIZE];
+        DatagramPacket packet = new DatagramPacket(bytes, bytes.length);
+        ByteBuffer buffer = ByteBuffer.wrap(bytes);
+        while (!closed) {
+            try {
+                packet.setLength(bytes.length);
+                socket.receive(packet);
+                if (packet.getLength() == CONTROL_PACKET_SIZE && buffer.getInt(0) == MAGIC) {
+                    byte type = buffer.get(4);
+                    if (type == HELLO) {
+                        if (lastSeen.put(packet.getSocketAddress(), System.nanoTime()) == null) {
+                            publishSubscribers();
+                        }
+                    } else if (type == BYE && lastSeen.remove(packet.getSocketAddress()) != null) {
+                        publishSubscribers();
+                    }
+                }
+            } catch (SocketTimeoutException e) {
+                // fall through to expiry
+            } catch (SocketException e) {
+                if (closed) return;
+            } catch (IOException e) {
+                // a malformed datagram; keep serving the rest
+            }
+            expireSilentSubscribers();
+        }
+    }
+
+    private void expireSilentSubscribers() {
+        long now = System.nanoTime();
+        boolean changed = false;
+        for (Iterator<Map.Entry<SocketAddress, Long>> it = lastSeen.entrySet().iterator(); it.hasNext(); ) {
+            if (now - it.next().getValue() > SUBSCRIPTION_TIMEOUT_NANOS) {
+                it.remove();
+                changed = true;
+            }
+        }
+        if (changed) {
+            publishSubscribers();
+        }
+    }
+
+    private void publishSubscribers() {
+        subscribers = lastSeen.keySet().toArray(new SocketAddress[0]);
+    }
+}
@@ -0,0 +1,115 @@
+package com.dsahub.patterns.compound;
+
+import com.dsahub.patterns.clock.VirtualScheduler;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Soak run in virtual time: several BeatModels share one VirtualScheduler, taking turns between the
+ * DeadlineBeatGenerator DJApp plays with, a WheelBeatGenerator on a scheduler-driven BeatTimerWheel and a
+ * SimpleThreadBeatGenerator. A DJ changes every model's tempo once a (virtual) minute, and hours of beats play
+ * out in seconds. The simulation runs twice and fails (exit code 1) unless both runs produce the identical beat
+ * trace, and unless no beat was skipped or fired late: with nothing else competing for the clock, deadline
+ * beats must land exactly on time and wheel beats within one tick.
+ * Usage: BeatSoakApp [hours=1] [models=10]
+ */
+public class BeatSoakApp {
+
+    private static final int[] SET_LIST = {90, 120, 128, 140, 174, 100, 60, 200};
+
+    public static void main(String[] args) {
+        int hours = args.length > 0 ? Integer.parseInt(args[0]) : 1;
+        int models = args.length > 1 ? Integer.parseInt(args[1]) : 10;
+
+        long wallStart = System.nanoTime();
+        long[] first = simulate(hours, models);
+        long wall = System.nanoTime() - wallStart;
+        long[] second = simulate(hours, models);
+
+        System.out.printf("simulated %d h x %d models: %d beats, %d tasks in %.2f s wall (%.0fx real time)%n",
+                hours, models, first[0], first[2], wall / 1e9, TimeUnit.HOURS.toNanos(hours) / (double) wall);
+        System.out.printf("deadline beats: max lateness %d ns; wheel beats: max lateness %.3f ms (tick %.3f ms);"
+                + " skipped %d%n", first[3], first[4] / 1e6, WHEEL_TICK_NANOS / 1e6, first[5]);
+        if (first[0] != second[0] || first[1] != second[1]) {
+            System.out.println("FAIL: runs differ (beats " + first[0] + " vs " + second[0] + ")");
+            System.exit(1);
+        }
+        if (first[3] != 0 || first[4] > WHEEL_TICK_NANOS || first[5] != 0) {
+            System.out.println("FAIL: beats were skipped or fired late in virtual time");
+            System.exit(1);
+        }
+        System.out.println("PASS: both runs produced the same beat trace, every beat on time");
+    }
+
+    private static final long WHEEL_TICK_NANOS = TimeUnit.MILLISECONDS.toNanos(1);
+
+    /**
+     * @return beat count, a hash of every beat's model and virtual time, tasks executed, max lateness of the
+     * deadline and of the wheel generators, beats skipped
+     */
+    private static long[] simulate(int hours, int models) {
+        VirtualScheduler scheduler = new VirtualScheduler();
+        BeatTimerWheel wheel = new BeatTimerWheel(WHEEL_TICK_NANOS, 1024, scheduler);
+        long[] beats = new long[1];
+        long[] trace = new long[1];
+        List<DJController> controllers = new ArrayList<>();
+        List<DeadlineBeatGenerator> deadlines = new ArrayList<>();
+        List<WheelBeatGenerator> wheels = new ArrayList<>();
+        for (int i = 0; i < models; i++) {
+            int id = i;
+            BeatGenerator generator;
+            switch (i % 3) {
+                case 0:
+                    DeadlineBeatGenerator deadline =
+                            new DeadlineBeatGenerator(DeadlineBeatGenerator.MissedBeatPolicy.SKIP, scheduler);
+                    deadlines.add(deadline);
+                    generator = deadline;
+                    break;
+                case 1:
+                    WheelBeatGenerator wheeled = new WheelBeatGenerator(wheel);
+                    wheels.add(wheeled);
+                    generator = wheeled;
+                    break;
+                default:
+                    generator = new SimpleThreadBeatGenerator(scheduler);
+            }
+            BeatModel model = new BeatModel(generator);
+            model.registerBeatObserver(() -> {
+                beats[0]++;
+                trace[0] = 31 * trace[0] + 17 * id + scheduler.nanoTime();
+            });
+            model.initialize();
+            DJController controller = new DJController(model);
+            controller.setBPM(SET_LIST[i % SET_LIST.length]);
+            controllers.add(controller);
+        }
+        for (DJController controller : controllers) {
+            controller.start();
+        }
+        long minutes = TimeUnit.HOURS.toMinutes(hours);
+        for (long minute = 1; minute <= minutes; minute++) {
+            scheduler.advanceBy(1, TimeUnit.MINUTES);
+            for (int i = 0; i < controllers.size(); i++) {
+                controllers.get(i).setBPM(SET_LIST[(int) ((i + minute) % SET_LIST.length)]);
+            }
+        }
+        for (DJController controller : controllers) {
+            controller.stop();
+        }
+        wheel.close();
+        long deadlineLateness = 0;
+        long wheelLateness = 0;
+        long skipped = 0;
+        for (DeadlineBeatGenerator g : deadlines) {
+            deadlineLateness = Math.max(deadlineLateness, g.getMaxLatenessNanos());
+            skipped += g.getSkippedBeats();
+        }
+        for (WheelBeatGenerator g : wheels) {
+            wheelLateness = Math.max(wheelLateness, g.getMaxLatenessNanos());
+            skipped += g.getSkippedBeats();
+        }
+        return new long[]{beats[0], trace[0], scheduler.getExecutedTasks(), deadlineLateness, wheelLateness, skipped};
+    }
+}
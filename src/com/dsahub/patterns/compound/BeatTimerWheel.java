@@ -0,0 +1,286 @@
+package com.dsahub.patterns.compound;
+
+import com.dsahub.patterns.clock.Scheduler;
+
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Hashed timing wheel driven by a single ticker thread, shared by any number of beat schedules.
+ * Each schedule owns one reusable Timeout; a task re-arming its own Timeout while it fires (the
+ * normal "fire, then arm the next beat" path) links it straight into its bucket, every other call
+ * is handed over through a lock-free queue and applied on the next tick.
+ * Tasks run on the ticker thread, so they must be short. close() stops the ticker; the shared() wheel
+ * lives as long as the JVM.
+ * Given a Scheduler the wheel owns no thread: each tick is a task on the scheduler, timed by its clock, so a
+ * VirtualScheduler can drive it.
+ */
+public class BeatTimerWheel implements Runnable, AutoCloseable {
+
+    public interface Task {
+        void run(long deadlineNanos);
+    }
+
+    public static final class Timeout {
+        private final Task task;
+        private volatile long requestedDeadline;
+        private volatile boolean cancelled;
+
+        // owned by the ticker thread
+        private long deadline;
+        private long remainingRounds;
+        private Bucket bucket;
+        private Timeout prev;
+        private Timeout next;
+
+        private Timeout(Task task) {
+            this.task = task;
+        }
+    }
+
+    private static final class Bucket {
+        private Timeout head;
+        private Timeout tail;
+
+        void add(Timeout t) {
+            t.bucket = this;
+            t.prev = tail;
+            t.next = null;
+            if (tail == null) {
+                head = t;
+            } else {
+                tail.next = t;
+            }
+            tail = t;
+        }
+
+        void remove(Timeout t) {
+            if (t.prev == null) {
+                head = t.next;
+            } else {
+                t.prev.next = t.next;
+            }
+            if (t.next == null) {
+                tail = t.prev;
+            } else {
+                t.next.prev = t.prev;
+            }
+            t.prev = null;
+            t.next = null;
+            t.bucket = null;
+        }
+    }
+
+    private static class Holder {
+        private static final BeatTimerWheel INSTANCE =
+                new BeatTimerWheel(TimeUnit.MILLISECONDS.toNanos(1), 1024, true, null);
+    }
+
+    private final long tickNanos;
+    private final int mask;
+    private final Bucket[] wheel;
+    private final Queue<Timeout> pending = new ConcurrentLinkedQueue<>();
+    // exactly one of these is set
+    private final Thread ticker;
+    private final Scheduler scheduler;
+    private final Runnable tickTask = this::tickOnScheduler;
+    private final long startTime;
+    private final boolean shared;
+    private volatile boolean closed;
+    // the thread expiring buckets right now: the ticker, or whichever thread the scheduler runs a tick on
+    private volatile Thread ticking;
+    private Scheduler.Cancellable nextTick;
+    private long tick;
+    private Timeout firing;
+
+    public BeatTimerWheel(long tickNanos, int wheelSize) {
+        this(tickNanos, wheelSize, false, null);
+    }
+
+    public BeatTimerWheel(long tickNanos, int wheelSize, Scheduler scheduler) {
+        this(tickNanos, wheelSize, false, scheduler);
+    }
+
+    private BeatTimerWheel(long tickNanos, int wheelSize, boolean shared, Scheduler scheduler) {
+        if (tickNanos <= 0) throw new IllegalArgumentException("tickNanos must be > 0");
+        if (wheelSize <= 0 || Integer.bitCount(wheelSize) != 1) {
+            throw new IllegalArgumentException("wheelSize must be a power of two");
+        }
+        this.tickNanos = tickNanos;
+        this.mask = wheelSize - 1;
+        this.wheel = new Bucket[wheelSize];
+        for (int i = 0; i < wheelSize; i++) {
+            wheel[i] = new Bucket();
+        }
+        this.scheduler = scheduler;
+        this.startTime = nanoTime();
+        this.shared = shared;
+        if (scheduler != null) {
+            this.ticker = null;
+            synchronized (this) {
+                nextTick = scheduler.schedule(tickTask, tickNanos, TimeUnit.NANOSECONDS);
+            }
+        } else {
+            this.ticker = new Thread(this, "BeatTimerWheel");
+            this.ticker.setDaemon(true);
+            this.ticker.start();
+        }
+    }
+
+    /**
+     * The process-wide wheel (1 ms ticks, 1024 buckets), started on first use.
+     */
+    public static BeatTimerWheel shared() {
+        return Holder.INSTANCE;
+    }
+
+    public Timeout newTimeout(Task task) {
+        return new Timeout(task);
+    }
+
+    /**
+     * The wheel's clock: System.nanoTime(), or the scheduler's time.
+     */
+    public long nanoTime() {
+        return scheduler != null ? scheduler.nanoTime() : System.nanoTime();
+    }
+
+    /**
+     * Arms (or re-arms) the timeout for the given absolute nanoTime() deadline.
+     */
+    public void schedule(Timeout t, long deadlineNanos) {
+        t.cancelled = false;
+        t.requestedDeadline = deadlineNanos;
+        if (Thread.currentThread() == ticking && t == firing) {
+            link(t, deadlineNanos);
+        } else {
+            pending.add(t);
+        }
+    }
+
+    public void cancel(Timeout t) {
+        t.cancelled = true;
+        pending.add(t);
+    }
+
+    public long getTickNanos() {
+        return tickNanos;
+    }
+
+    /**
+     * Stops the ticker thread and waits for it (or cancels the next tick on the scheduler); pending timeouts
+     * never fire.
+     */
+    @Override
+    public void close() {
+        if (shared) throw new IllegalStateException("the shared wheel cannot be closed");
+        closed = true;
+        if (scheduler != null) {
+            synchronized (this) {
+                nextTick.cancel();
+            }
+            return;
+        }
+        LockSupport.unpark(ticker);
+        if (Thread.currentThread() != ticker) {
+            try {
+                ticker.join();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+
+    @Override
+    public void run() {
+        ticking = Thread.currentThread();
+        while (!closed) {
+            long nextTickTime = startTime + (tick + 1) * tickNanos;
+            long now = System.nanoTime();
+            if (now - nextTickTime < 0) {
+                LockSupport.parkNanos(this, nextTickTime - now);
+                drainPending();
+                continue;
+            }
+            advance(now);
+        }
+    }
+
+    private void tickOnScheduler() {
+        if (closed) return;
+        ticking = Thread.currentThread();
+        try {
+            advance(scheduler.nanoTime());
+        } finally {
+            ticking = null;
+        }
+        synchronized (this) {
+            if (!closed) {
+                long delay = startTime + (tick + 1) * tickNanos - scheduler.nanoTime();
+                nextTick = scheduler.schedule(tickTask, delay, TimeUnit.NANOSECONDS);
+            }
+        }
+    }
+
+    private void advance(long now) {
+        drainPending();
+        // catch up on every tick we fell behind on, so no bucket is skipped
+        long currentTick = (now - startTime) / tickNanos;
+        while (tick < currentTick) {
+            tick++;
+            expire(wheel[(int) (tick & mask)], now);
+        }
+    }
+
+    private void drainPending() {
+        Timeout t;
+        while ((t = pending.poll()) != null) {
+            if (t.cancelled) {
+                unlink(t);
+            } else {
+                link(t, t.requestedDeadline);
+            }
+        }
+    }
+
+    private void link(Timeout t, long deadlineNanos) {
+        unlink(t);
+        t.deadline = deadlineNanos;
+        long ticks = Math.max(tick + 1, ceilDiv(deadlineNanos - startTime, tickNanos));
+        t.remainingRounds = (ticks - tick - 1) / wheel.length;
+        wheel[(int) (ticks & mask)].add(t);
+    }
+
+    private void unlink(Timeout t) {
+        if (t.bucket != null) {
+            t.bucket.remove(t);
+        }
+    }
+
+    private void expire(Bucket bucket, long now) {
+        Timeout t = bucket.head;
+        while (t != null) {
+            Timeout next = t.next;
+            if (t.remainingRounds > 0) {
+                t.remainingRounds--;
+            } else if (t.deadline - now <= 0) {
+                bucket.remove(t);
+                firing = t;
+                try {
+                    t.task.run(t.deadline);
+                } catch (RuntimeException e) {
+                    e.printStackTrace();
+                } finally {
+                    firing = null;
+                }
+            }
+            t = next;
+        }
+    }
+
+    private static long ceilDiv(long x, long y) {
+        return -Math.floorDiv(-x, y);
+    }
+}
@@ -0,0 +1,105 @@
+package com.dsahub.patterns.compound;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Drives N BeatModels from the shared BeatTimerWheel and reports thread count, process CPU and beat jitter.
+ * Usage: BeatTimerWheelBenchmark [models=10000] [seconds=20] [bpm=120]
+ */
+public class BeatTimerWheelBenchmark {
+
+    private static final int WARMUP_SECONDS = 2;
+    // 10 us buckets up to 100 ms, written by the ticker thread; main swaps in a fresh array to start measuring
+    // and a discarded one to stop, so it never reads buckets that are still being written
+    private static final long BUCKET_NANOS = TimeUnit.MICROSECONDS.toNanos(10);
+    private static final int BUCKETS = 10_000;
+    private static volatile AtomicLongArray latenessBuckets = new AtomicLongArray(BUCKETS);
+
+    public static void main(String[] args) throws Exception {
+        int models = args.length > 0 ? Integer.parseInt(args[0]) : 10_000;
+        int seconds = args.length > 1 ? Integer.parseInt(args[1]) : 20;
+        int bpm = args.length > 2 ? Integer.parseInt(args[2]) : 120;
+
+        ThreadMXBean threads = ManagementFactory.getThreadMXBean();
+        com.sun.management.OperatingSystemMXBean os =
+                (com.sun.management.OperatingSystemMXBean) ManagementFactory.getOperatingSystemMXBean();
+
+        BeatTimerWheel wheel = BeatTimerWheel.shared();
+        int threadsBefore = threads.getThreadCount();
+
+        LongAdder beats = new LongAdder();
+        List<WheelBeatGenerator> generators = new ArrayList<>(models);
+        List<BeatModel> beatModels = new ArrayList<>(models);
+        for (int i = 0; i < models; i++) {
+            WheelBeatGenerator generator = new WheelBeatGenerator(wheel);
+            generator.setLatenessListener(BeatTimerWheelBenchmark::recordLateness);
+            BeatModel model = new BeatModel(generator);
+            model.registerBeatObserver(beats::increment);
+            model.initialize();
+            model.setBPM(bpm);
+            generators.add(generator);
+            beatModels.add(model);
+        }
+
+        long cpuBefore = os.getProcessCpuTime();
+        long start = System.nanoTime();
+        for (BeatModel model : beatModels) {
+            model.on();
+        }
+        // let start-up and JIT settle before measuring jitter
+        Thread.sleep(TimeUnit.SECONDS.toMillis(WARMUP_SECONDS));
+        latenessBuckets = new AtomicLongArray(BUCKETS);
+        Thread.sleep(TimeUnit.SECONDS.toMillis(seconds));
+        AtomicLongArray measured = latenessBuckets;
+        latenessBuckets = new AtomicLongArray(BUCKETS);
+        int threadsDuring = threads.getThreadCount();
+        for (BeatModel model : beatModels) {
+            model.off();
+        }
+        long elapsed = System.nanoTime() - start;
+        long cpu = os.getProcessCpuTime() - cpuBefore;
+
+        long skipped = 0;
+        for (WheelBeatGenerator generator : generators) {
+            skipped += generator.getSkippedBeats();
+        }
+        // the first beat of every model fires immediately
+        long expected = models + (long) models * bpm * elapsed / TimeUnit.MINUTES.toNanos(1);
+
+        System.out.println("models           : " + models + " @ " + bpm + " BPM for " + seconds + " s (+" + WARMUP_SECONDS + " s warm-up)");
+        System.out.println("threads          : " + threadsBefore + " before, " + threadsDuring + " while running");
+        System.out.printf("process CPU      : %.2f s (%.1f%% of one core)%n",
+                cpu / 1e9, 100.0 * cpu / elapsed);
+        System.out.println("beats delivered  : " + beats.sum() + " (expected ~" + expected + ", skipped " + skipped + ")");
+        System.out.printf("lateness p50     : %.3f ms%n", percentile(measured, 0.50) / 1e6);
+        System.out.printf("lateness p99     : %.3f ms%n", percentile(measured, 0.99) / 1e6);
+        System.out.printf("lateness p99.9   : %.3f ms%n", percentile(measured, 0.999) / 1e6);
+    }
+
+    private static void recordLateness(long latenessNanos) {
+        int bucket = (int) Math.min(BUCKETS - 1, Math.max(0, latenessNanos / BUCKET_NANOS));
+        latenessBuckets.incrementAndGet(bucket);
+    }
+
+    private static long percentile(AtomicLongArray buckets, double p) {
+        long total = 0;
+        for (int i = 0; i < BUCKETS; i++) {
+            total += buckets.get(i);
+        }
+        long rank = (long) Math.ceil(p * total);
+        long seen = 0;
+        for (int i = 0; i < BUCKETS; i++) {
+            seen += buckets.get(i);
+            if (seen >= rank && seen > 0) {
+                return (i + 1) * BUCKET_NANOS;
+            }
+        }
+        return 0;
+    }
+}
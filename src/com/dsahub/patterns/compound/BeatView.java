@@ -2,9 +2,20 @@ package com.dsahub.patterns.compound;
 
 import javax.swing.*;
 import java.awt.*;
+import java.util.concurrent.atomic.AtomicLong;
 
+/**
+ * By default every beat and BPM change posts its own EDT task. With a frame rate the view instead renders
+ * from a single Swing Timer: observers only bump a counter / store the BPM, and each frame folds however
+ * many beats arrived since the last one into at most one repaint.
+ */
 public class BeatView implements BeatObserver, BPMObserver {
 
+    // the frame timer counts in whole milliseconds
+    public static final int MAX_FRAMES_PER_SECOND = 1000;
+
+    private static final int FLASH_MILLIS = 120;
+
     private final BeatModelInterface model;
     private JFrame frame;
     private JLabel beatLabel;
@@ -15,9 +26,32 @@ public class BeatView implements BeatObserver, BPMObserver {
 
     private final DJController controller;
 
+    private final int framesPerSecond;
+    private final AtomicLong beats = new AtomicLong();
+    private volatile int bpm;
+
+    // frame state, EDT only
+    private long renderedBeats;
+    private int renderedBpm;
+    private long flashUntil;
+    private boolean flashing;
+
     public BeatView(BeatModelInterface model, DJController controller) {
+        this(model, controller, 0);
+    }
+
+    /**
+     * @param framesPerSecond render rate of the frame-paced mode, up to MAX_FRAMES_PER_SECOND, or 0 to update
+     *                        the UI on every beat
+     */
+    public BeatView(BeatModelInterface model, DJController controller, int framesPerSecond) {
+        if (framesPerSecond < 0 || framesPerSecond > MAX_FRAMES_PER_SECOND) {
+            throw new IllegalArgumentException("framesPerSecond must be between 0 and " + MAX_FRAMES_PER_SECOND);
+        }
         this.model = model;
         this.controller = controller;
+        this.framesPerSecond = framesPerSecond;
+        this.bpm = model.getBPM();
         model.registerBeatObserver(this);
         model.registerBPMObserver(this);
         createUI();
@@ -63,10 +97,40 @@ public class BeatView implements BeatObserver, BPMObserver {
         frame.setSize(500, 300);
         frame.setLocationRelativeTo(null);
         frame.setVisible(true);
+
+        if (framesPerSecond > 0) {
+            renderedBpm = bpm;
+            new Timer(1000 / framesPerSecond, e -> renderFrame()).start();
+        }
+    }
+
+    private void renderFrame() {
+        long now = System.currentTimeMillis();
+        long beatCount = beats.get();
+        if (beatCount != renderedBeats) {
+            renderedBeats = beatCount;
+            flashUntil = now + FLASH_MILLIS;
+            if (!flashing) {
+                flashing = true;
+                beatLabel.setText("Beat!");
+            }
+        } else if (flashing && now >= flashUntil) {
+            flashing = false;
+            beatLabel.setText(" ");
+        }
+        int currentBpm = bpm;
+        if (currentBpm != renderedBpm) {
+            renderedBpm = currentBpm;
+            bpmLabel.setText("BPM: " + currentBpm);
+        }
     }
 
     @Override
     public void updateBeat() {
+        if (framesPerSecond > 0) {
+            beats.incrementAndGet();
+            return;
+        }
         // flash "Beat!" briefly
         SwingUtilities.invokeLater(() -> {
             beatLabel.setText("Beat!");
@@ -78,6 +142,10 @@ public class BeatView implements BeatObserver, BPMObserver {
 
     @Override
     public void updateBPM(int bpm) {
+        if (framesPerSecond > 0) {
+            this.bpm = bpm;
+            return;
+        }
         SwingUtilities.invokeLater(() -> bpmLabel.setText("BPM: " + bpm));
     }
 }
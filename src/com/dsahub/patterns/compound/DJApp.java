@@ -3,12 +3,12 @@ package com.dsahub.patterns.compound;
 public class DJApp {
     public static void main(String[] args) {
         // create strategy, model, controller, and view
-        SimpleThreadBeatGenerator generator = new SimpleThreadBeatGenerator();
+        DeadlineBeatGenerator generator = new DeadlineBeatGenerator();
         BeatModel model = new BeatModel(generator);
         DJController controller = new DJController(model);
         model.initialize();
         // view registers itself as observer
-        new BeatView(model, controller);
+        new BeatView(model, controller, 60);
         // optionally start with default BPM
         controller.setBPM(120);
         controller.start();
@@ -0,0 +1,371 @@
+package com.dsahub.patterns.compound;
+
+import com.dsahub.patterns.clock.Scheduler;
+
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
+import java.util.function.LongConsumer;
+
+/**
+ * Schedules every beat against an absolute nanoTime() deadline (previous deadline + period)
+ * instead of sleeping a full period after the observers return, so observer time and sleep overshoot
+ * never accumulate into drift.
+ * Beats that could not be fired on time are either fired back-to-back (CATCH_UP) or dropped (SKIP).
+ * With a TempoCurve the spacing of each beat is taken from the curve at the previous beat's deadline.
+ * By default every start() runs the beats on a dedicated thread parked until each deadline; given a Scheduler,
+ * the same beat logic runs as tasks on it instead, so a VirtualScheduler can fast-forward it.
+ */
+public class DeadlineBeatGenerator implements AutomatableBeatGenerator, Runnable {
+
+    public enum MissedBeatPolicy {
+        CATCH_UP,
+        SKIP
+    }
+
+    private static final long NANOS_PER_MINUTE = TimeUnit.MINUTES.toNanos(1);
+
+    private final MissedBeatPolicy missedBeatPolicy;
+    // exactly one of these is set
+    private final ThreadFactory threadFactory;
+    private final Scheduler scheduler;
+
+    private volatile int bpm = 90;
+    private volatile long periodNanos = NANOS_PER_MINUTE / 90;
+    private volatile long tempoChangedAt;
+    private volatile long tempoCurveStart;
+    private volatile TempoCurve tempoCurve;
+    private TimedBeatListener beatListener;
+    private LongConsumer latenessListener;
+    // the current beat thread; a thread whose stop() has cleared or replaced this exits its loop
+    private volatile Thread thread;
+    // guarded by this; a beat thread that stop() has let go of but may still be firing, which start() waits for
+    private Thread stopping;
+
+    // Scheduler mode, guarded by this: the beat chain of the current start(), the thread firing a beat, and
+    // whether stop() interrupted it
+    private Runnable step;
+    private Scheduler.Cancellable pending;
+    private Thread beatThread;
+    private boolean beatInterrupted;
+
+    // written only by the beat thread (or the step running on the scheduler)
+    private long previousDeadline;
+    private volatile long beatCount;
+    private volatile long skippedBeats;
+    private volatile long lastLatenessNanos;
+    private volatile long maxLatenessNanos;
+
+    public DeadlineBeatGenerator() {
+        this(MissedBeatPolicy.SKIP);
+    }
+
+    public DeadlineBeatGenerator(MissedBeatPolicy missedBeatPolicy) {
+        this(missedBeatPolicy, r -> new Thread(r, "DeadlineBeatGenerator"));
+    }
+
+    /**
+     * @param threadFactory creates the beat thread on every start()
+     */
+    public DeadlineBeatGenerator(MissedBeatPolicy missedBeatPolicy, ThreadFactory threadFactory) {
+        this(missedBeatPolicy, threadFactory, null);
+    }
+
+    /**
+     * Runs the beats as tasks on the scheduler, on its clock, instead of on a beat thread of its own.
+     */
+    public DeadlineBeatGenerator(MissedBeatPolicy missedBeatPolicy, Scheduler scheduler) {
+        this(missedBeatPolicy, null, scheduler);
+    }
+
+    private DeadlineBeatGenerator(MissedBeatPolicy missedBeatPolicy, ThreadFactory threadFactory,
+                                  Scheduler scheduler) {
+        this.missedBeatPolicy = missedBeatPolicy;
+        this.threadFactory = threadFactory;
+        this.scheduler = scheduler;
+        this.tempoChangedAt = nanoTime();
+    }
+
+    @Override
+    public void initialize() {
+        // no-op
+    }
+
+    @Override
+    public void start() {
+        if (scheduler != null) {
+            startSteps();
+            return;
+        }
+        boolean interrupted = false;
+        while (true) {
+            Thread previous;
+            synchronized (this) {
+                if (thread != null) break;
+                previous = stopping;
+                // from the stopped thread's own last beat nothing of it runs after this, so there is no overlap
+                if (previous == null || previous == Thread.currentThread() || !previous.isAlive()) {
+                    stopping = null;
+                    previousDeadline = System.nanoTime() - periodNanos;
+                    Thread t = threadFactory.newThread(this);
+                    thread = t;
+                    t.start();
+                    break;
+                }
+            }
+            // joined outside the monitor: its last beat may still call back into the generator
+            try {
+                previous.join();
+            } catch (InterruptedException e) {
+                interrupted = true;
+            }
+        }
+        if (interrupted) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private synchronized void startSteps() {
+        if (step != null) return;
+        // first beat is due immediately
+        previousDeadline = scheduler.nanoTime() - periodNanos;
+        Runnable s = new Runnable() {
+            @Override
+            public void run() {
+                step(this);
+            }
+        };
+        step = s;
+        pending = scheduler.schedule(s, 0, TimeUnit.NANOSECONDS);
+    }
+
+    /**
+     * Interrupts the beat thread (or a beat being fired on the scheduler) and waits for it to finish, unless called
+     * from a beat.
+     */
+    @Override
+    public void stop() {
+        if (scheduler != null) {
+            stopSteps();
+            return;
+        }
+        Thread t;
+        synchronized (this) {
+            t = thread;
+            thread = null;
+            if (t != null) {
+                stopping = t;
+            }
+        }
+        if (t == null) return;
+        t.interrupt();
+        if (t != Thread.currentThread()) {
+            try {
+                t.join();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+
+    @Override
+    public void setBPM(int bpm) {
+        if (bpm <= 0) bpm = 1;
+        this.bpm = bpm;
+        this.periodNanos = NANOS_PER_MINUTE / bpm;
+        // an explicit tempo overrides any automation
+        this.tempoCurve = null;
+        retarget();
+    }
+
+    @Override
+    public void setTempoCurve(TempoCurve curve, long startNanos) {
+        this.tempoCurveStart = startNanos;
+        this.tempoCurve = curve;
+        retarget();
+    }
+
+    private void retarget() {
+        if (scheduler != null) {
+            synchronized (this) {
+                this.tempoChangedAt = scheduler.nanoTime();
+                // move the waiting step up; a step that is already running re-reads the tempo before waiting again
+                if (pending != null && pending.cancel()) {
+                    pending = scheduler.schedule(step, 0, TimeUnit.NANOSECONDS);
+                }
+            }
+            return;
+        }
+        this.tempoChangedAt = System.nanoTime();
+        // wake the beat thread so it re-targets the new deadline instead of finishing the old period
+        Thread t = thread;
+        if (t != null) {
+            LockSupport.unpark(t);
+        }
+    }
+
+    /**
+     * Spacing between the beat at beatNanos and the next one.
+     */
+    private long periodAfter(long beatNanos) {
+        TempoCurve curve = tempoCurve;
+        if (curve == null) {
+            return periodNanos;
+        }
+        return (long) (NANOS_PER_MINUTE / curve.bpmAt(beatNanos - tempoCurveStart));
+    }
+
+    public int getBPM() {
+        return bpm;
+    }
+
+    @Override
+    public long nanoTime() {
+        return scheduler != null ? scheduler.nanoTime() : System.nanoTime();
+    }
+
+    @Override
+    public void setBeatListener(Runnable onBeat) {
+        this.beatListener = onBeat == null ? null : scheduledNanos -> onBeat.run();
+    }
+
+    @Override
+    public void setTimedBeatListener(TimedBeatListener listener) {
+        this.beatListener = listener;
+    }
+
+    /**
+     * Receives the lateness (actual fire time - deadline) of every beat, in nanoseconds, on the beat thread.
+     */
+    public void setLatenessListener(LongConsumer latenessListener) {
+        this.latenessListener = latenessListener;
+    }
+
+    public long getBeatCount() {
+        return beatCount;
+    }
+
+    public long getSkippedBeats() {
+        return skippedBeats;
+    }
+
+    public long getLastLatenessNanos() {
+        return lastLatenessNanos;
+    }
+
+    public long getMaxLatenessNanos() {
+        return maxLatenessNanos;
+    }
+
+    public MissedBeatPolicy getMissedBeatPolicy() {
+        return missedBeatPolicy;
+    }
+
+    @Override
+    public void run() {
+        // not a shared running flag: after stop(); start() from a beat, the old thread must still exit
+        while (thread == Thread.currentThread()) {
+            long now = System.nanoTime();
+            long deadline = nextDeadline();
+            if (deadline - now > 0) {
+                LockSupport.parkNanos(this, deadline - now);
+                // a stray interrupt must not turn parkNanos into a busy spin; stop() clears thread first
+                Thread.interrupted();
+                continue;
+            }
+            fire(deadline, now);
+        }
+    }
+
+    /**
+     * One link of the scheduler-driven beat chain: fires every beat that is due, then schedules itself for the
+     * next deadline. Beats are fired outside the monitor, so observers may call back into the generator.
+     */
+    private void step(Runnable self) {
+        while (true) {
+            long now;
+            long deadline;
+            synchronized (this) {
+                if (step != self) return;
+                now = scheduler.nanoTime();
+                deadline = nextDeadline();
+                if (deadline - now > 0) {
+                    pending = scheduler.schedule(self, deadline - now, TimeUnit.NANOSECONDS);
+                    return;
+                }
+                pending = null;
+                beatThread = Thread.currentThread();
+            }
+            try {
+                fire(deadline, now);
+            } finally {
+                synchronized (this) {
+                    if (beatInterrupted) {
+                        // meant for the beat, not for whatever the scheduler runs on this thread next
+                        Thread.interrupted();
+                        beatInterrupted = false;
+                    }
+                    beatThread = null;
+                    notifyAll();
+                }
+            }
+        }
+    }
+
+    private synchronized void stopSteps() {
+        if (step == null) return;
+        step = null;
+        if (pending != null) {
+            pending.cancel();
+            pending = null;
+        }
+        // like stop() in thread mode: a beat blocked on an observer that waits for the caller must give up
+        if (beatThread != null && beatThread != Thread.currentThread()) {
+            beatThread.interrupt();
+            beatInterrupted = true;
+        }
+        while (beatThread != null && beatThread != Thread.currentThread()) {
+            try {
+                wait();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            }
+        }
+    }
+
+    private long nextDeadline() {
+        long deadline = previousDeadline + periodAfter(previousDeadline);
+        // a faster tempo must not date the next beat back before the moment it was requested
+        long changedAt = tempoChangedAt;
+        if (changedAt - deadline > 0) {
+            deadline = changedAt;
+        }
+        return deadline;
+    }
+
+    private void fire(long deadline, long now) {
+        long period = periodAfter(previousDeadline);
+        long lateness = now - deadline;
+        if (lateness >= period && missedBeatPolicy == MissedBeatPolicy.SKIP) {
+            long missed = lateness / period;
+            skippedBeats += missed;
+            deadline += missed * period;
+            lateness = now - deadline;
+        }
+        previousDeadline = deadline;
+        beatCount++;
+        lastLatenessNanos = lateness;
+        if (lateness > maxLatenessNanos) {
+            maxLatenessNanos = lateness;
+        }
+        LongConsumer listener = latenessListener;
+        if (listener != null) {
+            listener.accept(lateness);
+        }
+        TimedBeatListener beat = beatListener;
+        if (beat != null) {
+            beat.onBeat(deadline);
+        }
+    }
+}
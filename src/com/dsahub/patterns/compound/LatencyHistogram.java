@@ -0,0 +1,91 @@
+package com.dsahub.patterns.compound;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Lock-free, allocation-free latency histogram with log-linear buckets: 16 linear sub-buckets per power
+ * of two, so any recorded value is reported to within 1/16 (~6%) of its true value.
+ * Safe to record from many threads while another thread queries it.
+ */
+public class LatencyHistogram {
+
+    private static final int SUB_BUCKET_BITS = 4;
+    private static final int SUB_BUCKETS = 1 << SUB_BUCKET_BITS;
+    private static final int BUCKETS = (64 - SUB_BUCKET_BITS + 1) * SUB_BUCKETS;
+
+    private final AtomicLongArray counts = new AtomicLongArray(BUCKETS);
+
+    public void record(long nanos) {
+        counts.incrementAndGet(indexOf(Math.max(0, nanos)));
+    }
+
+    public long getCount() {
+        long total = 0;
+        for (int i = 0; i < BUCKETS; i++) {
+            total += counts.get(i);
+        }
+        return total;
+    }
+
+    /**
+     * @param percentile in [0, 100], e.g. 99.9
+     * @return an upper bound for the value at that percentile, or 0 if nothing was recorded
+     */
+    public long getValueAtPercentile(double percentile) {
+        long total = getCount();
+        if (total == 0) return 0;
+        long rank = Math.max(1, (long) Math.ceil(percentile / 100.0 * total));
+        long seen = 0;
+        for (int i = 0; i < BUCKETS; i++) {
+            seen += counts.get(i);
+            if (seen >= rank) {
+                return highestValueIn(i);
+            }
+        }
+        return highestValueIn(BUCKETS - 1);
+    }
+
+    public long getMax() {
+        for (int i = BUCKETS - 1; i >= 0; i--) {
+            if (counts.get(i) > 0) {
+                return highestValueIn(i);
+            }
+        }
+        return 0;
+    }
+
+    /**
+     * Adds every value recorded in the other histogram to this one.
+     */
+    public void add(LatencyHistogram other) {
+        for (int i = 0; i < BUCKETS; i++) {
+            long c = other.counts.get(i);
+            if (c != 0) {
+                counts.addAndGet(i, c);
+            }
+        }
+    }
+
+    public void reset() {
+        for (int i = 0; i < BUCKETS; i++) {
+            counts.set(i, 0);
+        }
+    }
+
+    private static int indexOf(long value) {
+        if (value < SUB_BUCKETS) {
+            return (int) value;
+        }
+        int shift = 63 - Long.numberOfLeadingZeros(value) - SUB_BUCKET_BITS;
+        return (shift + 1) * SUB_BUCKETS + (int) ((value >>> shift) - SUB_BUCKETS);
+    }
+
+    private static long highestValueIn(int index) {
+        if (index < SUB_BUCKETS) {
+            return index;
+        }
+        int shift = index / SUB_BUCKETS - 1;
+        long subBucket = index % SUB_BUCKETS + SUB_BUCKETS;
+        return ((subBucket + 1) << shift) - 1;
+    }
+}
@@ -0,0 +1,44 @@
+package com.dsahub.patterns.compound;
+
+import java.util.Arrays;
+
+/**
+ * Copy-on-write observer registry. Writers copy the array under a lock and publish it through a volatile
+ * field; readers take that snapshot and index it, so notifying allocates nothing (unlike iterating a
+ * CopyOnWriteArrayList, which creates an iterator every time).
+ */
+final class ObserverList<T> {
+
+    private volatile T[] observers;
+
+    ObserverList(T[] empty) {
+        this.observers = empty;
+    }
+
+    synchronized void add(T o) {
+        T[] current = observers;
+        T[] next = Arrays.copyOf(current, current.length + 1);
+        next[current.length] = o;
+        observers = next;
+    }
+
+    synchronized boolean remove(Object o) {
+        T[] current = observers;
+        for (int i = 0; i < current.length; i++) {
+            if (current[i].equals(o)) {
+                T[] next = Arrays.copyOf(current, current.length - 1);
+                System.arraycopy(current, i + 1, next, i, current.length - i - 1);
+                observers = next;
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * The current snapshot; callers must not modify it.
+     */
+    T[] array() {
+        return observers;
+    }
+}
@@ -0,0 +1,230 @@
+package com.dsahub.patterns.compound;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * Headless generator that renders the beat timeline as 16-bit mono PCM instead of playing it in real time.
+ * Time only advances when render() is called, so hours of click track come out as fast as the CPU can fill
+ * buffers. Beats land on exact sample positions; a BPM change (e.g. DJController.setBPM from a beat observer
+ * or between render() calls) takes effect at the current render position, spaced from the previous beat.
+ * Audio is streamed to the channel in fixed-size buffers, so memory use does not depend on track length.
+ */
+public class OfflineBeatGenerator implements BeatGenerator, Closeable {
+
+    public static final int DEFAULT_SAMPLE_RATE = 44_100;
+
+    private static final int BUFFER_FRAMES = 4096;
+    private static final int WAV_HEADER_BYTES = 44;
+    private static final long MAX_WAV_DATA_BYTES = 0xFFFFFFFFL - (WAV_HEADER_BYTES - 8);
+
+    private final WritableByteChannel out;
+    private final FileChannel wavFile;
+    private final int sampleRate;
+    private final short[] click;
+    private final short[] mix = new short[BUFFER_FRAMES];
+    private final ByteBuffer buffer = ByteBuffer.allocateDirect(BUFFER_FRAMES * 2).order(ByteOrder.LITTLE_ENDIAN);
+
+    private Runnable onBeat;
+    private boolean running;
+    private int bpm = 90;
+
+    private long position;
+    private long anchorSample;
+    private long beatsSinceAnchor;
+    private long nextBeatSample;
+    private long lastBeatSample;
+    private long clickStart = Long.MIN_VALUE;
+    private long beatCount;
+
+    /**
+     * Streams raw little-endian 16-bit mono PCM into the channel.
+     */
+    public OfflineBeatGenerator(WritableByteChannel pcmOut, int sampleRate) {
+        this(pcmOut, null, sampleRate);
+    }
+
+    private OfflineBeatGenerator(WritableByteChannel out, FileChannel wavFile, int sampleRate) {
+        if (sampleRate <= 0) throw new IllegalArgumentException("sampleRate must be > 0");
+        this.out = out;
+        this.wavFile = wavFile;
+        this.sampleRate = sampleRate;
+        this.click = synthesizeClick(sampleRate);
+    }
+
+    /**
+     * Streams into a WAV file; the RIFF sizes are filled in by close().
+     */
+    public static OfflineBeatGenerator toWavFile(Path path, int sampleRate) throws IOException {
+        FileChannel channel = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                StandardOpenOption.TRUNCATE_EXISTING);
+        channel.write(wavHeader(sampleRate, 0));
+        return new OfflineBeatGenerator(channel, channel, sampleRate);
+    }
+
+    @Override
+    public void initialize() {
+        // no-op
+    }
+
+    @Override
+    public void start() {
+        if (running) return;
+        running = true;
+        anchorSample = position;
+        beatsSinceAnchor = 0;
+        nextBeatSample = position;
+    }
+
+    @Override
+    public void stop() {
+        running = false;
+    }
+
+    @Override
+    public void setBPM(int bpm) {
+        if (bpm <= 0) bpm = 1;
+        this.bpm = bpm;
+        if (running && beatCount > 0) {
+            // the new tempo is measured from the last beat, but can never reach back before the render position
+            anchorSample = Math.max(position, lastBeatSample + samplesForBeats(1));
+            beatsSinceAnchor = 0;
+            nextBeatSample = anchorSample;
+        }
+    }
+
+    @Override
+    public void setBeatListener(Runnable onBeat) {
+        this.onBeat = onBeat;
+    }
+
+    public int getSampleRate() {
+        return sampleRate;
+    }
+
+    /**
+     * Frames rendered so far, i.e. the position on the offline timeline.
+     */
+    public long getPosition() {
+        return position;
+    }
+
+    public long getBeatCount() {
+        return beatCount;
+    }
+
+    public void renderSeconds(double seconds) {
+        render(Math.round(seconds * sampleRate));
+    }
+
+    /**
+     * Renders the next frames of the timeline, firing the beat listener at each beat as it is reached.
+     */
+    public void render(long frames) {
+        long end = position + frames;
+        while (position < end) {
+            int n = (int) Math.min(BUFFER_FRAMES, end - position);
+            fill(n);
+            write(n);
+        }
+    }
+
+    private void fill(int frames) {
+        long chunkStart = position;
+        long chunkEnd = chunkStart + frames;
+        int offset = 0;
+        while (running && nextBeatSample < chunkEnd) {
+            int beatOffset = (int) (nextBeatSample - chunkStart);
+            mixClick(chunkStart, offset, beatOffset);
+            offset = beatOffset;
+            clickStart = nextBeatSample;
+            lastBeatSample = nextBeatSample;
+            beatCount++;
+            beatsSinceAnchor++;
+            nextBeatSample = anchorSample + samplesForBeats(beatsSinceAnchor);
+            // observers may change the BPM here; position marks where that change applies
+            position = chunkStart + beatOffset;
+            Runnable beat = onBeat;
+            if (beat != null) {
+                beat.run();
+            }
+        }
+        position = chunkEnd;
+        mixClick(chunkStart, offset, frames);
+    }
+
+    private void mixClick(long chunkStart, int from, int to) {
+        for (int i = from; i < to; i++) {
+            long sinceClick = chunkStart + i - clickStart;
+            mix[i] = sinceClick >= 0 && sinceClick < click.length ? click[(int) sinceClick] : 0;
+        }
+    }
+
+    private void write(int frames) {
+        buffer.clear();
+        for (int i = 0; i < frames; i++) {
+            buffer.putShort(mix[i]);
+        }
+        buffer.flip();
+        try {
+            while (buffer.hasRemaining()) {
+                out.write(buffer);
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private long samplesForBeats(long beats) {
+        return beats * 60L * sampleRate / bpm;
+    }
+
+    @Override
+    public void close() throws IOException {
+        try {
+            if (wavFile != null) {
+                long dataBytes = position * 2;
+                if (dataBytes > MAX_WAV_DATA_BYTES) {
+                    throw new IOException("track too long for a WAV file: " + dataBytes + " data bytes");
+                }
+                wavFile.write(wavHeader(sampleRate, dataBytes), 0);
+            }
+        } finally {
+            out.close();
+        }
+    }
+
+    private static ByteBuffer wavHeader(int sampleRate, long dataBytes) {
+        ByteBuffer header = ByteBuffer.allocate(WAV_HEADER_BYTES).order(ByteOrder.LITTLE_ENDIAN);
+        header.put(new byte[]{'R', 'I', 'F', 'F'}).putInt((int) (dataBytes + WAV_HEADER_BYTES - 8));
+        header.put(new byte[]{'W', 'A', 'V', 'E'});
+        header.put(new byte[]{'f', 'm', 't', ' '}).putInt(16);
+        header.putShort((short) 1)              // PCM
+                .putShort((short) 1)            // mono
+                .putInt(sampleRate)
+                .putInt(sampleRate * 2)         // byte rate
+                .putShort((short) 2)            // block align
+                .putShort((short) 16);          // bits per sample
+        header.put(new byte[]{'d', 'a', 't', 'a'}).putInt((int) dataBytes);
+        header.flip();
+        return header;
+    }
+
+    // 30 ms, 1.5 kHz sine with an exponential decay
+    private static short[] synthesizeClick(int sampleRate) {
+        short[] samples = new short[sampleRate * 30 / 1000];
+        for (int i = 0; i < samples.length; i++) {
+            double t = (double) i / sampleRate;
+            double envelope = Math.exp(-t * 150);
+            samples[i] = (short) (Math.sin(2 * Math.PI * 1500 * t) * envelope * Short.MAX_VALUE * 0.8);
+        }
+        return samples;
+    }
+}
@@ -0,0 +1,35 @@
+package com.dsahub.patterns.compound;
+
+import java.nio.file.Path;
+import java.nio.file.Paths;
+
+/**
+ * Renders a click track to a WAV file without sound hardware or a GUI, changing the tempo through the
+ * DJController every minute of track time.
+ * Usage: OfflineRenderApp [out.wav=clicktrack.wav] [minutes=60]
+ */
+public class OfflineRenderApp {
+    public static void main(String[] args) throws Exception {
+        Path out = Paths.get(args.length > 0 ? args[0] : "clicktrack.wav");
+        int minutes = args.length > 1 ? Integer.parseInt(args[1]) : 60;
+
+        long start = System.nanoTime();
+        try (OfflineBeatGenerator generator =
+                     OfflineBeatGenerator.toWavFile(out, OfflineBeatGenerator.DEFAULT_SAMPLE_RATE)) {
+            BeatModel model = new BeatModel(generator);
+            DJController controller = new DJController(model);
+            model.initialize();
+            controller.setBPM(100);
+            controller.start();
+            for (int minute = 0; minute < minutes; minute++) {
+                // sweep 100 -> 180 BPM and back every 16 minutes
+                int step = minute % 16;
+                controller.setBPM(100 + 10 * (step < 8 ? step : 16 - step));
+                generator.renderSeconds(60);
+            }
+            controller.stop();
+            System.out.println("Rendered " + minutes + " min, " + generator.getBeatCount() + " beats to " + out);
+        }
+        System.out.printf("Took %.2f s%n", (System.nanoTime() - start) / 1e9);
+    }
+}
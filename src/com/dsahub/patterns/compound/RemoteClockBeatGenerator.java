@@ -0,0 +1,283 @@
+package com.dsahub.patterns.compound;
+
+import java.io.IOException;
+import java.net.DatagramPacket;
+import java.net.DatagramSocket;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.SocketTimeoutException;
+import java.nio.ByteBuffer;
+import java.util.concurrent.TimeUnit;
+import java.util.function.LongConsumer;
+
+/**
+ * Follows the beats of a BeatPublisher instead of timing them itself: a beat fires when its datagram arrives,
+ * so followers need no sleep loop of their own. Each beat is reported at the master's scheduled time mapped
+ * onto the local clock, using an offset and skew fitted to the lower envelope of the last few one-way delays.
+ * The tempo is the master's; setBPM is ignored.
+ * A beat from a newer master session (the master or its model restarted) starts the follower over: sequence
+ * numbers and the clock fit are reset, since both belonged to the old master. Late datagrams of an older session
+ * are dropped.
+ */
+public class RemoteClockBeatGenerator implements BeatGenerator, Runnable {
+
+    private static final int WINDOW = 64;
+    // beyond this the fit is noise, not a real oscillator difference
+    private static final double MAX_SKEW = 500e-6;
+
+    private final InetSocketAddress master;
+
+    private volatile boolean running = false;
+    private volatile DatagramSocket socket;
+    private volatile Thread thread;
+    private TimedBeatListener beatListener;
+    private LongConsumer latenessListener;
+
+    // written only by the receive thread
+    private final long[] masterTimes = new long[WINDOW];
+    private final long[] delays = new long[WINDOW];
+    private int samples;
+    private long origin;
+    private long masterSession;
+    private volatile double offsetNanos;
+    private volatile double skew;
+    private volatile long lastSequence = -1;
+    private volatile long beatCount;
+    private volatile long lostBeats;
+    private volatile long lastLatenessNanos;
+    private volatile int masterBPM;
+    private volatile long masterRestarts;
+
+    public RemoteClockBeatGenerator(int masterPort) {
+        this(new InetSocketAddress(InetAddress.getLoopbackAddress(), masterPort));
+    }
+
+    public RemoteClockBeatGenerator(InetSocketAddress master) {
+        this.master = master;
+    }
+
+    @Override
+    public void initialize() {
+        // no-op
+    }
+
+    @Override
+    public synchronized void start() {
+        if (running) return;
+        try {
+            socket = new DatagramSocket(new InetSocketAddress(master.getAddress(), 0));
+            socket.setSoTimeout((int) BeatPublisher.HEARTBEAT_MILLIS);
+        } catch (IOException e) {
+            throw new IllegalStateException("cannot open follower socket", e);
+        }
+        samples = 0;
+        lastSequence = -1;
+        masterSession = 0;
+        running = true;
+        thread = new Thread(this, "RemoteClockBeatGenerator");
+        thread.start();
+    }
+
+    @Override
+    public void stop() {
+        Thread t;
+        DatagramSocket s;
+        synchronized (this) {
+            running = false;
+            t = thread;
+            s = socket;
+            thread = null;
+            socket = null;
+        }
+        if (t == null) return;
+        sendControl(s, BeatPublisher.BYE);
+        // closing the socket wakes the blocked receive
+        s.close();
+        if (t != Thread.currentThread()) {
+            try {
+                t.join();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+
+    @Override
+    public void setBPM(int bpm) {
+        // no-op: the master owns the tempo
+    }
+
+    @Override
+    public void setBeatListener(Runnable onBeat) {
+        this.beatListener = onBeat == null ? null : scheduledNanos -> onBeat.run();
+    }
+
+    @Override
+    public void setTimedBeatListener(TimedBeatListener listener) {
+        this.beatListener = listener;
+    }
+
+    /**
+     * Receives the lateness (local fire time - master deadline on the local clock) of every beat, in nanoseconds.
+     */
+    public void setLatenessListener(LongConsumer latenessListener) {
+        this.latenessListener = latenessListener;
+    }
+
+    public int getMasterBPM() {
+        return masterBPM;
+    }
+
+    public long getOffsetNanos() {
+        return (long) offsetNanos;
+    }
+
+    public double getSkewPpm() {
+        return skew * 1e6;
+    }
+
+    public long getBeatCount() {
+        return beatCount;
+    }
+
+    /**
+     * Beats whose datagram never arrived, from gaps in the master's sequence numbers.
+     */
+    public long getLostBeats() {
+        return lostBeats;
+    }
+
+    public long getLastLatenessNanos() {
+        return lastLatenessNanos;
+    }
+
+    // Times a newer master session took over since start()
+    public long getMasterRestarts() {
+        return masterRestarts;
+    }
+
+    /**
+     * Maps a master System.nanoTime() value onto the local clock.
+     */
+    public long toLocalNanos(long masterNanos) {
+        return masterNanos + (long) (offsetNanos + skew * (masterNanos - origin));
+    }
+
+    @Override
+    public void run() {
+        DatagramSocket s = socket;
+        byte[] bytes = new byte[BeatPublisher.BEAT_PACKET_SIZE];
+        DatagramPacket packet = new DatagramPacket(bytes, bytes.length);
+        ByteBuffer buffer = ByteBuffer.wrap(bytes);
+        long lastHello = 0;
+        while (running) {
+            long now = System.nanoTime();
+            if (lastHello == 0 || now - lastHello >= TimeUnit.MILLISECONDS.toNanos(BeatPublisher.HEARTBEAT_MILLIS)) {
+                sendControl(s, BeatPublisher.HELLO);
+                lastHello = now;
+            }
+            try {
+                packet.setLength(bytes.length);
+                s.receive(packet);
+            } catch (SocketTimeoutException e) {
+                continue;
+            } catch (IOException e) {
+                // closed by stop()
+                return;
+            }
+            long received = System.nanoTime();
+            if (packet.getLength() != BeatPublisher.BEAT_PACKET_SIZE || buffer.getInt(0) != BeatPublisher.MAGIC
+                    || buffer.get(4) != BeatPublisher.BEAT) {
+                continue;
+            }
+            long session = buffer.getLong(5);
+            long sequence = buffer.getLong(13);
+            long scheduled = buffer.getLong(21);
+            long sent = buffer.getLong(29);
+            if (session != masterSession) {
+                if (session < masterSession) continue;
+                if (masterSession != 0) {
+                    masterRestarts++;
+                }
+                masterSession = session;
+                // its sequence starts over, and its nanoTime may have a new origin
+                lastSequence = -1;
+                samples = 0;
+            }
+            masterBPM = buffer.getInt(37);
+            // datagrams may be duplicated or reordered; a late one is older news than what already fired
+            if (sequence <= lastSequence) continue;
+            if (lastSequence >= 0) {
+                lostBeats += sequence - lastSequence - 1;
+            }
+            lastSequence = sequence;
+            addSample(sent, received - sent);
+            fire(toLocalNanos(scheduled), received);
+        }
+    }
+
+    private void fire(long localDeadline, long received) {
+        long lateness = received - localDeadline;
+        beatCount++;
+        lastLatenessNanos = lateness;
+        LongConsumer late = latenessListener;
+        if (late != null) {
+            late.accept(lateness);
+        }
+        TimedBeatListener beat = beatListener;
+        if (beat != null) {
+            beat.onBeat(localDeadline);
+        }
+    }
+
+    /**
+     * Least-squares slope of delay against master time gives the skew; the offset is then the lowest line with
+     * that slope under every sample, since queueing only ever adds delay.
+     */
+    private void addSample(long masterTime, long delay) {
+        if (samples == 0) {
+            origin = masterTime;
+        }
+        int slot = samples % WINDOW;
+        masterTimes[slot] = masterTime;
+        delays[slot] = delay;
+        samples++;
+        int n = Math.min(samples, WINDOW);
+
+        double slope = 0;
+        if (n >= 16) {
+            double meanT = 0;
+            double meanD = 0;
+            for (int i = 0; i < n; i++) {
+                meanT += masterTimes[i] - origin;
+                meanD += delays[i];
+            }
+            meanT /= n;
+            meanD /= n;
+            double cov = 0;
+            double var = 0;
+            for (int i = 0; i < n; i++) {
+                double dt = masterTimes[i] - origin - meanT;
+                cov += dt * (delays[i] - meanD);
+                var += dt * dt;
+            }
+            slope = var > 0 ? Math.max(-MAX_SKEW, Math.min(MAX_SKEW, cov / var)) : 0;
+        }
+        double offset = Double.MAX_VALUE;
+        for (int i = 0; i < n; i++) {
+            offset = Math.min(offset, delays[i] - slope * (masterTimes[i] - origin));
+        }
+        skew = slope;
+        offsetNanos = offset;
+    }
+
+    private void sendControl(DatagramSocket s, byte type) {
+        byte[] bytes = new byte[BeatPublisher.CONTROL_PACKET_SIZE];
+        ByteBuffer.wrap(bytes).putInt(BeatPublisher.MAGIC).put(type);
+        try {
+            s.send(new DatagramPacket(bytes, bytes.length, master));
+        } catch (IOException e) {
+            // the next heartbeat retries
+        }
+    }
+}
@@ -0,0 +1,34 @@
+package com.dsahub.patterns.compound;
+
+/**
+ * Headless demo of SequencerModel: a 4/4 kick, 3-over-4 hats and swung eighths on one clock,
+ * printing each hit with its offset from the start so the phase relationship is visible.
+ */
+public class SequencerApp {
+    public static void main(String[] args) throws Exception {
+        SequencerModel model = new SequencerModel();
+        DJController controller = new DJController(model);
+
+        SequencerTrack kick = new SequencerTrack("kick", 1, 1);
+        SequencerTrack hats = new SequencerTrack("hats", 3, 4);
+        SequencerTrack shaker = new SequencerTrack("shaker", 2, 1, new boolean[]{true, true}, 0.33);
+        model.addTrack(kick);
+        model.addTrack(hats);
+        model.addTrack(shaker);
+
+        long start = System.nanoTime();
+        for (SequencerTrack track : new SequencerTrack[]{kick, hats, shaker}) {
+            track.registerObserver((step, scheduledNanos, dispatchNanos) ->
+                    System.out.printf("%8.1f ms  %-6s step %d%n",
+                            (scheduledNanos - start) / 1e6, track.getName(), step));
+        }
+
+        model.initialize();
+        controller.setBPM(120);
+        controller.start();
+        Thread.sleep(4000);
+        controller.setBPM(150);
+        Thread.sleep(3200);
+        controller.stop();
+    }
+}
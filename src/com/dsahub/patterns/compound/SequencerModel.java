@@ -0,0 +1,118 @@
+package com.dsahub.patterns.compound;
+
+/**
+ * Multi-track sequencer on a single master clock. One generator ticks at TICKS_PER_BEAT ticks per beat and
+ * every track derives its hits from the same tick count, so tracks with different subdivisions stay
+ * phase-locked through tempo changes and the whole sequencer costs one scheduling thread.
+ * Plain beat observers are notified on every quarter-note beat, like BeatModel.
+ */
+public class SequencerModel implements BeatModelInterface {
+
+    /** Divisible by 2, 3, 4, 6, 8, 12, 16, 24 and 32, so common subdivisions and triplets land on exact ticks. */
+    public static final int TICKS_PER_BEAT = 96;
+
+    private final ObserverList<SequencerTrack> tracks = new ObserverList<>(new SequencerTrack[0]);
+    private final ObserverList<BeatObserver> beatObservers = new ObserverList<>(new BeatObserver[0]);
+    private final ObserverList<BPMObserver> bpmObservers = new ObserverList<>(new BPMObserver[0]);
+
+    private final BeatGenerator clock;
+    private volatile int bpm = 90;
+    // written only by the clock thread, reset by on()
+    private long tick;
+
+    public SequencerModel() {
+        this(new DeadlineBeatGenerator(DeadlineBeatGenerator.MissedBeatPolicy.CATCH_UP));
+    }
+
+    /**
+     * @param clock drives the master ticks; CATCH_UP is the right policy, since skipping ticks would skip hits
+     */
+    public SequencerModel(BeatGenerator clock) {
+        this.clock = clock;
+        this.clock.setTimedBeatListener(new TimedBeatListener() {
+            @Override
+            public void onBeat(long scheduledNanos) {
+                onTick(scheduledNanos);
+            }
+        });
+        this.clock.setBPM(bpm * TICKS_PER_BEAT);
+    }
+
+    public void addTrack(SequencerTrack track) {
+        tracks.add(track);
+    }
+
+    public void removeTrack(SequencerTrack track) {
+        tracks.remove(track);
+    }
+
+    @Override
+    public void initialize() {
+        clock.initialize();
+    }
+
+    @Override
+    public void on() {
+        tick = 0;
+        clock.start();
+        notifyBPMObservers();
+    }
+
+    @Override
+    public void off() {
+        clock.stop();
+        notifyBPMObservers();
+    }
+
+    @Override
+    public void setBPM(int bpm) {
+        if (bpm <= 0) bpm = 1;
+        this.bpm = bpm;
+        clock.setBPM(bpm * TICKS_PER_BEAT);
+        notifyBPMObservers();
+    }
+
+    @Override
+    public int getBPM() {
+        return bpm;
+    }
+
+    @Override
+    public void registerBeatObserver(BeatObserver o) {
+        beatObservers.add(o);
+    }
+
+    @Override
+    public void removeBeatObserver(BeatObserver o) {
+        beatObservers.remove(o);
+    }
+
+    @Override
+    public void registerBPMObserver(BPMObserver o) {
+        bpmObservers.add(o);
+    }
+
+    @Override
+    public void removeBPMObserver(BPMObserver o) {
+        bpmObservers.remove(o);
+    }
+
+    private void onTick(long scheduledNanos) {
+        long t = tick++;
+        long dispatchNanos = clock.nanoTime();
+        for (SequencerTrack track : tracks.array()) {
+            track.onTick(t, scheduledNanos, dispatchNanos);
+        }
+        if (t % TICKS_PER_BEAT == 0) {
+            for (BeatObserver o : beatObservers.array()) {
+                o.updateBeat();
+            }
+        }
+    }
+
+    private void notifyBPMObservers() {
+        for (BPMObserver o : bpmObservers.array()) {
+            o.updateBPM(bpm);
+        }
+    }
+}
@@ -0,0 +1,72 @@
+package com.dsahub.patterns.compound;
+
+/**
+ * One pattern of a SequencerModel: {@code steps} evenly spaced steps across {@code beats} beats
+ * (4 over 1 = sixteenths, 3 over 4 = a 3-against-4 polyrhythm), a repeating on/off pattern over those steps,
+ * and optional swing that pushes every odd step later by a fraction of a step.
+ * Hits are delivered to the track's observers as beat events whose sequence is the step number, counting from 0.
+ */
+public class SequencerTrack {
+
+    private final String name;
+    private final int ticksPerStep;
+    private final int swingTicks;
+    private final boolean[] pattern;
+    private final ObserverList<BeatEventObserver> observers = new ObserverList<>(new BeatEventObserver[0]);
+
+    /**
+     * @param swing 0 for straight time, up to 0.5 to delay odd steps by half a step
+     */
+    public SequencerTrack(String name, int steps, int beats, boolean[] pattern, double swing) {
+        if (steps <= 0 || beats <= 0) throw new IllegalArgumentException("steps and beats must be > 0");
+        if ((SequencerModel.TICKS_PER_BEAT * beats) % steps != 0) {
+            throw new IllegalArgumentException(steps + " steps over " + beats + " beats does not fit "
+                    + SequencerModel.TICKS_PER_BEAT + " ticks per beat");
+        }
+        if (swing < 0 || swing > 0.5) throw new IllegalArgumentException("swing must be in [0, 0.5]");
+        if (pattern.length == 0) throw new IllegalArgumentException("pattern must not be empty");
+        this.name = name;
+        this.ticksPerStep = SequencerModel.TICKS_PER_BEAT * beats / steps;
+        this.swingTicks = (int) Math.round(swing * ticksPerStep);
+        this.pattern = pattern.clone();
+    }
+
+    /**
+     * Every step is a hit.
+     */
+    public SequencerTrack(String name, int steps, int beats) {
+        this(name, steps, beats, new boolean[]{true}, 0);
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public void registerObserver(BeatEventObserver o) {
+        observers.add(o);
+    }
+
+    public void removeObserver(BeatEventObserver o) {
+        observers.remove(o);
+    }
+
+    /**
+     * Called by the model for every master tick; fires the observers if a hit falls on this tick.
+     */
+    void onTick(long tick, long scheduledNanos, long dispatchNanos) {
+        long pair = 2L * ticksPerStep;
+        long inPair = tick % pair;
+        long step;
+        if (inPair == 0) {
+            step = tick / ticksPerStep;
+        } else if (inPair == ticksPerStep + swingTicks) {
+            step = tick / pair * 2 + 1;
+        } else {
+            return;
+        }
+        if (!pattern[(int) (step % pattern.length)]) return;
+        for (BeatEventObserver o : observers.array()) {
+            o.updateBeat(step, scheduledNanos, dispatchNanos);
+        }
+    }
+}
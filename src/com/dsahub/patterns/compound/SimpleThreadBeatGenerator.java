@@ -1,10 +1,35 @@
 package com.dsahub.patterns.compound;
 
-public class SimpleThreadBeatGenerator implements BeatGenerator, Runnable {
-    private volatile boolean running = false;
+import com.dsahub.patterns.clock.Scheduler;
+import com.dsahub.patterns.clock.SystemScheduler;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Fires a beat, then waits a full period before the next one, so observer time adds to the period.
+ * Time comes from a Scheduler: by default a wall-clock one with its own "BeatGenerator" thread,
+ * or a VirtualScheduler to fast-forward hours of beats in a simulation.
+ * No longer a Runnable: beats are tasks on the Scheduler, so there is no loop for a caller to run.
+ */
+public class SimpleThreadBeatGenerator implements BeatGenerator {
+    private final Scheduler scheduler;
     private volatile int bpm = 90;
     private Runnable onBeat;
-    private Thread thread;
+    // guarded by this; bumped by start() and stop() so a beat chain from before a stop() cannot resume
+    private boolean running;
+    private long generation;
+    private Scheduler.Cancellable pending;
+    // guarded by this; the thread running the observers right now, if any, and whether stop() interrupted it
+    private Thread beatThread;
+    private boolean beatInterrupted;
+
+    public SimpleThreadBeatGenerator() {
+        this(new SystemScheduler("BeatGenerator"));
+    }
+
+    public SimpleThreadBeatGenerator(Scheduler scheduler) {
+        this.scheduler = scheduler;
+    }
 
     @Override
     public void initialize() {
@@ -12,18 +37,38 @@ public class SimpleThreadBeatGenerator implements BeatGenerator, Runnable {
     }
 
     @Override
-    public void start() {
+    public synchronized void start() {
         if (running) return;
         running = true;
-        thread = new Thread(this, "BeatGenerator");
-        thread.start();
+        long g = ++generation;
+        pending = scheduler.schedule(() -> beat(g), 0, TimeUnit.MILLISECONDS);
     }
 
+    /**
+     * Interrupts a beat that is being delivered and waits for it to finish, unless an observer is stopping us from
+     * the beat itself. The interrupt frees a beat blocked on an observer (a full BLOCK queue, invokeAndWait) that
+     * may be the very thread calling stop().
+     */
     @Override
-    public void stop() {
+    public synchronized void stop() {
+        if (!running) return;
         running = false;
-        if (thread != null) {
-            thread.interrupt();
+        generation++;
+        if (pending != null) {
+            pending.cancel();
+            pending = null;
+        }
+        if (beatThread != null && beatThread != Thread.currentThread()) {
+            beatThread.interrupt();
+            beatInterrupted = true;
+        }
+        while (beatThread != null && beatThread != Thread.currentThread()) {
+            try {
+                wait();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            }
         }
     }
 
@@ -39,17 +84,36 @@ public class SimpleThreadBeatGenerator implements BeatGenerator, Runnable {
     }
 
     @Override
-    public void run() {
-        while (running) {
-            try {
-                if (onBeat != null) {
-                    onBeat.run();
+    public long nanoTime() {
+        return scheduler.nanoTime();
+    }
+
+    private void beat(long g) {
+        synchronized (this) {
+            if (g != generation) return;
+            pending = null;
+            beatThread = Thread.currentThread();
+        }
+        // observers run without the monitor, so one that waits on another thread using this generator cannot deadlock
+        try {
+            Runnable listener = onBeat;
+            if (listener != null) {
+                listener.run();
+            }
+        } finally {
+            synchronized (this) {
+                if (beatInterrupted) {
+                    // meant for the beat, not for whatever the scheduler runs on this thread next
+                    Thread.interrupted();
+                    beatInterrupted = false;
+                }
+                beatThread = null;
+                notifyAll();
+                // an observer may have stopped (or restarted) us
+                if (g == generation) {
+                    long delay = 60000L / bpm;
+                    pending = scheduler.schedule(() -> beat(g), delay, TimeUnit.MILLISECONDS);
                 }
-                long delay = 60000L / (bpm <= 0 ? 1 : bpm);
-                Thread.sleep(delay);
-            } catch (InterruptedException e) {
-                // allow thread to exit
-                break;
             }
         }
     }
@@ -0,0 +1,33 @@
+package com.dsahub.patterns.compound;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Headless demo of tempo automation: a step list, a linear ramp and an exponential ramp are scheduled up front,
+ * the generator spaces the beats from the curve and the BPM observer sees a few rate-limited updates
+ * instead of one per change.
+ */
+public class TempoAutomationApp {
+    public static void main(String[] args) throws Exception {
+        BeatModel model = new BeatModel(new DeadlineBeatGenerator());
+        long start = System.nanoTime();
+        model.registerBeatEventObserver((sequence, scheduledNanos, dispatchNanos) ->
+                System.out.printf("%8.1f ms  beat %d%n", (scheduledNanos - start) / 1e6, sequence));
+        model.registerBPMObserver(bpm ->
+                System.out.printf("%8.1f ms  bpm -> %d%n", (System.nanoTime() - start) / 1e6, bpm));
+        model.setBPMNotifyInterval(500, TimeUnit.MILLISECONDS);
+
+        TempoCurve curve = TempoCurve.startingAt(90)
+                .steps(new double[]{100, 110, 120}, 2, TimeUnit.SECONDS)
+                .linearTo(180, 4, TimeUnit.SECONDS)
+                .exponentialTo(60, 4, TimeUnit.SECONDS)
+                .hold(2, TimeUnit.SECONDS)
+                .build();
+
+        model.initialize();
+        model.on();
+        model.automateTempo(curve);
+        Thread.sleep(TimeUnit.NANOSECONDS.toMillis(curve.getDurationNanos()));
+        model.off();
+    }
+}
@@ -0,0 +1,140 @@
+package com.dsahub.patterns.compound;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * A tempo plan scheduled ahead of time: a start BPM followed by holds, steps and linear or exponential ramps.
+ * Times are relative to the moment the curve is applied; after the last segment the final BPM holds.
+ * Immutable, so a generator thread can evaluate it while another thread replaces it.
+ */
+public final class TempoCurve {
+
+    private enum Shape {
+        HOLD, LINEAR, EXPONENTIAL
+    }
+
+    private static final class Segment {
+        final Shape shape;
+        final long startNanos;
+        final long durationNanos;
+        final double fromBpm;
+        final double toBpm;
+
+        Segment(Shape shape, long startNanos, long durationNanos, double fromBpm, double toBpm) {
+            this.shape = shape;
+            this.startNanos = startNanos;
+            this.durationNanos = durationNanos;
+            this.fromBpm = fromBpm;
+            this.toBpm = toBpm;
+        }
+    }
+
+    private final Segment[] segments;
+    private final double startBpm;
+    private final double endBpm;
+    private final long durationNanos;
+
+    private TempoCurve(Builder builder) {
+        this.segments = builder.segments.toArray(new Segment[0]);
+        // a leading step takes effect immediately
+        this.startBpm = segments.length > 0 ? segments[0].fromBpm : builder.startBpm;
+        this.endBpm = builder.bpm;
+        this.durationNanos = builder.elapsed;
+    }
+
+    public static Builder startingAt(double bpm) {
+        return new Builder(bpm);
+    }
+
+    /**
+     * @param elapsedNanos time since the curve was applied
+     */
+    public double bpmAt(long elapsedNanos) {
+        if (elapsedNanos <= 0) return startBpm;
+        if (elapsedNanos >= durationNanos) return endBpm;
+        // segments are contiguous and sorted; curves are short, so a linear scan is fine
+        for (Segment s : segments) {
+            long into = elapsedNanos - s.startNanos;
+            if (into < s.durationNanos) {
+                double fraction = (double) into / s.durationNanos;
+                switch (s.shape) {
+                    case LINEAR:
+                        return s.fromBpm + (s.toBpm - s.fromBpm) * fraction;
+                    case EXPONENTIAL:
+                        return s.fromBpm * Math.pow(s.toBpm / s.fromBpm, fraction);
+                    default:
+                        return s.fromBpm;
+                }
+            }
+        }
+        return endBpm;
+    }
+
+    public long getDurationNanos() {
+        return durationNanos;
+    }
+
+    public double getEndBpm() {
+        return endBpm;
+    }
+
+    public static class Builder {
+        private final List<Segment> segments = new ArrayList<>();
+        private final double startBpm;
+        private double bpm;
+        private long elapsed;
+
+        private Builder(double startBpm) {
+            this.startBpm = checkBpm(startBpm);
+            this.bpm = startBpm;
+        }
+
+        // Keep the current tempo
+        public Builder hold(long duration, TimeUnit unit) {
+            return add(Shape.HOLD, unit.toNanos(duration), bpm);
+        }
+
+        // Jump to a new tempo and keep it
+        public Builder stepTo(double bpm, long duration, TimeUnit unit) {
+            this.bpm = checkBpm(bpm);
+            return add(Shape.HOLD, unit.toNanos(duration), bpm);
+        }
+
+        // One step per entry, each held for the same time
+        public Builder steps(double[] bpms, long eachDuration, TimeUnit unit) {
+            for (double b : bpms) {
+                stepTo(b, eachDuration, unit);
+            }
+            return this;
+        }
+
+        // Constant BPM change per unit of time
+        public Builder linearTo(double bpm, long duration, TimeUnit unit) {
+            return add(Shape.LINEAR, unit.toNanos(duration), checkBpm(bpm));
+        }
+
+        // Constant ratio per unit of time, which sounds even to the ear across wide ranges
+        public Builder exponentialTo(double bpm, long duration, TimeUnit unit) {
+            return add(Shape.EXPONENTIAL, unit.toNanos(duration), checkBpm(bpm));
+        }
+
+        public TempoCurve build() {
+            return new TempoCurve(this);
+        }
+
+        private Builder add(Shape shape, long durationNanos, double toBpm) {
+            if (durationNanos <= 0) throw new IllegalArgumentException("duration must be > 0");
+            segments.add(new Segment(shape, elapsed, durationNanos, bpm, toBpm));
+            elapsed += durationNanos;
+            bpm = toBpm;
+            return this;
+        }
+
+        private static double checkBpm(double bpm) {
+            if (!(bpm > 0)) throw new IllegalArgumentException("bpm must be > 0");
+            return bpm;
+        }
+    }
+}
@@ -0,0 +1,11 @@
+package com.dsahub.patterns.compound;
+
+/**
+ * Beat callback from a generator that knows when each beat was due.
+ */
+public interface TimedBeatListener {
+    /**
+     * @param scheduledNanos the generator's nanoTime() at which this beat was scheduled to fire
+     */
+    void onBeat(long scheduledNanos);
+}
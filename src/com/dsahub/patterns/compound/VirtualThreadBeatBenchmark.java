@@ -0,0 +1,94 @@
+package com.dsahub.patterns.compound;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Compares platform-thread and virtual-thread deadline generators at increasing numbers of concurrent
+ * generators: start-up time, live platform threads, process CPU, beat lateness and stop (interrupt + join) time.
+ * Creating 100k platform threads usually exceeds OS limits; that run is reported as failed, not aborted.
+ * Usage: VirtualThreadBeatBenchmark [counts=1000,10000,100000] [seconds=10] [bpm=120]
+ */
+public class VirtualThreadBeatBenchmark {
+
+    public static void main(String[] args) throws Exception {
+        String[] counts = (args.length > 0 ? args[0] : "1000,10000,100000").split(",");
+        int seconds = args.length > 1 ? Integer.parseInt(args[1]) : 10;
+        int bpm = args.length > 2 ? Integer.parseInt(args[2]) : 120;
+
+        System.out.printf("%-9s %8s %10s %9s %9s %10s %10s %10s %9s %8s%n", "kind", "count", "startMs",
+                "threads", "cpu%", "lateP50us", "lateP99us", "lateP999us", "stopMs", "beats");
+        for (String c : counts) {
+            int count = Integer.parseInt(c.trim());
+            run("platform", count, seconds, bpm);
+            run("virtual", count, seconds, bpm);
+        }
+    }
+
+    private static void run(String kind, int count, int seconds, int bpm) throws InterruptedException {
+        ThreadMXBean threads = ManagementFactory.getThreadMXBean();
+        com.sun.management.OperatingSystemMXBean os =
+                (com.sun.management.OperatingSystemMXBean) ManagementFactory.getOperatingSystemMXBean();
+        LatencyHistogram lateness = new LatencyHistogram();
+        LongAdder beats = new LongAdder();
+        List<DeadlineBeatGenerator> generators = new ArrayList<>(count);
+
+        long startBegin = System.nanoTime();
+        String failure = null;
+        try {
+            for (int i = 0; i < count; i++) {
+                DeadlineBeatGenerator generator = kind.equals("virtual")
+                        ? new VirtualThreadBeatGenerator()
+                        : new DeadlineBeatGenerator();
+                generator.setLatenessListener(lateness::record);
+                generator.setBeatListener(beats::increment);
+                generator.setBPM(bpm);
+                generator.start();
+                generators.add(generator);
+            }
+        } catch (OutOfMemoryError e) {
+            failure = "failed after " + generators.size() + " generators: " + e.getMessage();
+        }
+        long startMillis = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - startBegin);
+
+        if (failure == null) {
+            // let every generator settle into its schedule before measuring
+            Thread.sleep(TimeUnit.SECONDS.toMillis(2));
+            lateness.reset();
+            beats.reset();
+            long cpuBefore = os.getProcessCpuTime();
+            long measureBegin = System.nanoTime();
+            Thread.sleep(TimeUnit.SECONDS.toMillis(seconds));
+            long cpu = os.getProcessCpuTime() - cpuBefore;
+            long elapsed = System.nanoTime() - measureBegin;
+            int liveThreads = threads.getThreadCount();
+            long beatCount = beats.sum();
+
+            long stopBegin = System.nanoTime();
+            stopAll(generators);
+            long stopMillis = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - stopBegin);
+
+            System.out.printf("%-9s %8d %10d %9d %9.1f %10.1f %10.1f %10.1f %9d %8d%n", kind, count, startMillis,
+                    liveThreads, 100.0 * cpu / elapsed,
+                    lateness.getValueAtPercentile(50) / 1e3,
+                    lateness.getValueAtPercentile(99) / 1e3,
+                    lateness.getValueAtPercentile(99.9) / 1e3,
+                    stopMillis, beatCount);
+        } else {
+            stopAll(generators);
+            System.out.printf("%-9s %8d %s%n", kind, count, failure);
+        }
+        generators.clear();
+        System.gc();
+    }
+
+    private static void stopAll(List<DeadlineBeatGenerator> generators) {
+        for (DeadlineBeatGenerator generator : generators) {
+            generator.stop();
+        }
+    }
+}
@@ -0,0 +1,23 @@
+package com.dsahub.patterns.compound;
+
+import java.util.concurrent.ThreadFactory;
+
+/**
+ * Deadline-scheduled generator whose beat loop runs on a virtual thread, so one logical generator per stream
+ * costs a small heap object instead of a platform thread and its stack. Parking between beats unmounts the
+ * virtual thread from its carrier. stop() interrupts the loop and joins it, like DeadlineBeatGenerator.
+ * Requires Java 21+.
+ */
+public class VirtualThreadBeatGenerator extends DeadlineBeatGenerator {
+
+    // shared, so beat threads are numbered across all generators rather than from 0 in each
+    private static final ThreadFactory THREADS = Thread.ofVirtual().name("VirtualBeatGenerator-", 0).factory();
+
+    public VirtualThreadBeatGenerator() {
+        this(MissedBeatPolicy.SKIP);
+    }
+
+    public VirtualThreadBeatGenerator(MissedBeatPolicy missedBeatPolicy) {
+        super(missedBeatPolicy, THREADS);
+    }
+}
@@ -0,0 +1,170 @@
+package com.dsahub.patterns.compound;
+
+import java.util.concurrent.TimeUnit;
+import java.util.function.LongConsumer;
+
+/**
+ * Beat generator that owns no thread: every beat is a Timeout on a shared BeatTimerWheel, re-armed
+ * at previous deadline + period after it fires, so thousands of models share one ticker thread.
+ * Beats run on the wheel's ticker thread, on the wheel's clock; lateness is bounded below by the wheel's tick.
+ */
+public class WheelBeatGenerator implements AutomatableBeatGenerator, BeatTimerWheel.Task {
+
+    private static final long NANOS_PER_MINUTE = TimeUnit.MINUTES.toNanos(1);
+
+    private final BeatTimerWheel wheel;
+    private final BeatTimerWheel.Timeout timeout;
+
+    private volatile boolean running = false;
+    private volatile int bpm = 90;
+    private volatile long periodNanos = NANOS_PER_MINUTE / 90;
+    private volatile long previousDeadline;
+    private volatile long tempoCurveStart;
+    private volatile TempoCurve tempoCurve;
+    private TimedBeatListener beatListener;
+    private LongConsumer latenessListener;
+
+    // written only by the ticker thread
+    private volatile long beatCount;
+    private volatile long skippedBeats;
+    private volatile long maxLatenessNanos;
+
+    public WheelBeatGenerator() {
+        this(BeatTimerWheel.shared());
+    }
+
+    public WheelBeatGenerator(BeatTimerWheel wheel) {
+        this.wheel = wheel;
+        this.timeout = wheel.newTimeout(this);
+    }
+
+    @Override
+    public void initialize() {
+        // no-op
+    }
+
+    @Override
+    public synchronized void start() {
+        if (running) return;
+        running = true;
+        long now = wheel.nanoTime();
+        previousDeadline = now - periodNanos;
+        wheel.schedule(timeout, now);
+    }
+
+    @Override
+    public synchronized void stop() {
+        running = false;
+        wheel.cancel(timeout);
+    }
+
+    @Override
+    public synchronized void setBPM(int bpm) {
+        if (bpm <= 0) bpm = 1;
+        this.bpm = bpm;
+        this.periodNanos = NANOS_PER_MINUTE / bpm;
+        // an explicit tempo overrides any automation
+        this.tempoCurve = null;
+        retarget();
+    }
+
+    @Override
+    public synchronized void setTempoCurve(TempoCurve curve, long startNanos) {
+        this.tempoCurveStart = startNanos;
+        this.tempoCurve = curve;
+        retarget();
+    }
+
+    private void retarget() {
+        if (running) {
+            // re-target the pending beat instead of waiting out the old period, but never into the past
+            long previous = previousDeadline;
+            long deadline = previous + periodAfter(previous);
+            long now = wheel.nanoTime();
+            wheel.schedule(timeout, now - deadline > 0 ? now : deadline);
+        }
+    }
+
+    /**
+     * Spacing between the beat at beatNanos and the next one.
+     */
+    private long periodAfter(long beatNanos) {
+        TempoCurve curve = tempoCurve;
+        if (curve == null) {
+            return periodNanos;
+        }
+        return (long) (NANOS_PER_MINUTE / curve.bpmAt(beatNanos - tempoCurveStart));
+    }
+
+    public int getBPM() {
+        return bpm;
+    }
+
+    @Override
+    public long nanoTime() {
+        return wheel.nanoTime();
+    }
+
+    @Override
+    public void setBeatListener(Runnable onBeat) {
+        this.beatListener = onBeat == null ? null : scheduledNanos -> onBeat.run();
+    }
+
+    @Override
+    public void setTimedBeatListener(TimedBeatListener listener) {
+        this.beatListener = listener;
+    }
+
+    /**
+     * Receives the lateness (actual fire time - deadline) of every beat, in nanoseconds, on the ticker thread.
+     */
+    public void setLatenessListener(LongConsumer latenessListener) {
+        this.latenessListener = latenessListener;
+    }
+
+    public long getBeatCount() {
+        return beatCount;
+    }
+
+    public long getSkippedBeats() {
+        return skippedBeats;
+    }
+
+    public long getMaxLatenessNanos() {
+        return maxLatenessNanos;
+    }
+
+    @Override
+    public void run(long deadline) {
+        if (!running) return;
+        long period = periodAfter(previousDeadline);
+        if (deadline - previousDeadline < period) {
+            // a re-target raced with a beat that already fired; keep the spacing from that beat
+            wheel.schedule(timeout, previousDeadline + period);
+            return;
+        }
+        long lateness = wheel.nanoTime() - deadline;
+        if (lateness >= period) {
+            long missed = lateness / period;
+            skippedBeats += missed;
+            deadline += missed * period;
+            lateness -= missed * period;
+        }
+        previousDeadline = deadline;
+        beatCount++;
+        if (lateness > maxLatenessNanos) {
+            maxLatenessNanos = lateness;
+        }
+        LongConsumer listener = latenessListener;
+        if (listener != null) {
+            listener.accept(lateness);
+        }
+        TimedBeatListener beat = beatListener;
+        if (beat != null) {
+            beat.onBeat(deadline);
+        }
+        if (running) {
+            wheel.schedule(timeout, deadline + periodAfter(deadline));
+        }
+    }
+}
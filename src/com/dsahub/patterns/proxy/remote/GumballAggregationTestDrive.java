@@ -0,0 +1,103 @@
+package com.dsahub.patterns.proxy.remote;
+
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.rmi.server.UnicastRemoteObject;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * A GumballFleetAggregator watches thousands of machines in four regions while customers buy gumballs at random;
+ * once a second it prints the region totals and how long reading them took. At the end the totals are checked
+ * against a poll of every machine, and the poll is timed too.
+ * Usage: GumballAggregationTestDrive [machines=2000] [seconds=5] [salesPerSecond=2000]
+ */
+public class GumballAggregationTestDrive {
+
+    private static final String[] REGIONS = {"north", "south", "east", "west"};
+
+    public static void main(String[] args) throws Exception {
+        int machines = args.length > 0 ? Integer.parseInt(args[0]) : 2000;
+        int seconds = args.length > 1 ? Integer.parseInt(args[1]) : 5;
+        int salesPerSecond = args.length > 2 ? Integer.parseInt(args[2]) : 2000;
+
+        GumballTelemetry telemetry = new GumballTelemetry(100, TimeUnit.MILLISECONDS);
+        GumballFleetAggregator aggregator = new GumballFleetAggregator();
+        List<GumballMachine> fleet = new ArrayList<>();
+        for (int i = 0; i < machines; i++) {
+            // small machines, so some of them sell out
+            GumballMachine machine = new GumballMachine(REGIONS[i % REGIONS.length] + "-" + i,
+                    ThreadLocalRandom.current().nextInt(1, 20), telemetry);
+            aggregator.watch(machine);
+            fleet.add(machine);
+        }
+
+        // machines narrate every sale; keep the console for the totals
+        PrintStream console = System.out;
+        System.setOut(new PrintStream(OutputStream.nullOutputStream()));
+        long sales = 0;
+        int perTick = Math.max(1, salesPerSecond / 100);
+        long start = System.nanoTime();
+        long nextReport = start + TimeUnit.SECONDS.toNanos(1);
+        long end = start + TimeUnit.SECONDS.toNanos(seconds);
+        while (System.nanoTime() < end) {
+            for (int i = 0; i < perTick; i++) {
+                GumballMachine machine = fleet.get(ThreadLocalRandom.current().nextInt(machines));
+                machine.insertQuarter();
+                machine.turnCrank();
+                sales++;
+            }
+            Thread.sleep(10);
+            if (System.nanoTime() >= nextReport) {
+                nextReport += TimeUnit.SECONDS.toNanos(1);
+                long queryStart = System.nanoTime();
+                StringBuilder line = new StringBuilder();
+                for (String region : REGIONS) {
+                    line.append(region).append('=').append(aggregator.getGumballs(region))
+                            .append('/').append(aggregator.getSoldOut(region)).append(' ');
+                }
+                long queryNanos = System.nanoTime() - queryStart;
+                console.printf("t=%ds gumballs/soldOut %s fleet=%d/%d (read in %.1f us)%n",
+                        TimeUnit.NANOSECONDS.toSeconds(System.nanoTime() - start), line,
+                        aggregator.getTotalGumballs(), aggregator.getTotalSoldOut(), queryNanos / 1e3);
+            }
+        }
+        // let the last window flush
+        Thread.sleep(500);
+        System.setOut(console);
+
+        long pollStart = System.nanoTime();
+        Map<String, long[]> polled = new HashMap<>();
+        for (GumballMachine machine : fleet) {
+            String region = machine.getLocation().substring(0, machine.getLocation().indexOf('-'));
+            long[] totals = polled.computeIfAbsent(region, r -> new long[2]);
+            totals[0] += machine.getCount();
+            if (GumballState.SOLD_OUT.getDisplayName().equals(machine.getState())) totals[1]++;
+        }
+        long pollNanos = System.nanoTime() - pollStart;
+
+        boolean ok = true;
+        for (Map.Entry<String, long[]> e : new TreeMap<>(polled).entrySet()) {
+            GumballFleetAggregator.Region region = aggregator.getRegion(e.getKey());
+            boolean match = region.getGumballs() == e.getValue()[0] && region.getSoldOut() == e.getValue()[1];
+            ok &= match;
+            System.out.printf("%s polled gumballs=%d soldOut=%d %s%n", region, e.getValue()[0], e.getValue()[1],
+                    match ? "OK" : "MISMATCH");
+        }
+        System.out.printf("sales=%d; polling %d machines took %.1f us (in-process; each would be a remote call)%n",
+                sales, machines, pollNanos / 1e3);
+        System.out.println(ok ? "aggregated totals match" : "aggregated totals DIFFER");
+
+        telemetry.shutdown();
+        for (GumballMachine machine : fleet) {
+            UnicastRemoteObject.unexportObject(machine, true);
+        }
+        UnicastRemoteObject.unexportObject(aggregator, true);
+        if (!ok) System.exit(1);
+    }
+}
@@ -0,0 +1,109 @@
+package com.dsahub.patterns.proxy.remote;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Lock-free heart of a gumball machine. State, inventory and a change version live in one 64-bit word:
+ * <pre>
+ *   bits 0-31   count (never negative)
+ *   bits 32-33  GumballState ordinal
+ *   bits 34-63  version, +1 per transition (wraps after 2^30 changes)
+ * </pre>
+ * Every transition is a single compareAndSet from one whole word to the next, so a quarter can be accepted
+ * once and a gumball released once per quarter no matter how many RMI threads call in, and a reader always sees
+ * a count and a state that belong together.
+ */
+public final class GumballCore {
+
+    /** Returned by a transition that was not allowed in the current state. Never a valid word. */
+    public static final long REJECTED = -1L;
+
+    static final long VERSION_MASK = (1L << 30) - 1;
+    private static final int STATE_SHIFT = 32;
+    private static final int VERSION_SHIFT = 34;
+    private static final GumballState[] STATES = GumballState.values();
+
+    private final AtomicLong word;
+
+    public GumballCore(int count) {
+        if (count < 0) throw new IllegalArgumentException("count must be >= 0");
+        this.word = new AtomicLong(pack(count > 0 ? GumballState.NO_QUARTER : GumballState.SOLD_OUT, count, 0));
+    }
+
+    private GumballCore(AtomicLong word) {
+        this.word = word;
+    }
+
+    /**
+     * A core that carries on from a word saved earlier, version included.
+     */
+    static GumballCore restore(long word) {
+        if (!isValid(word)) throw new IllegalArgumentException("not a gumball word: " + Long.toHexString(word));
+        return new GumballCore(new AtomicLong(word));
+    }
+
+    // Could this word have come from a core (as opposed to a corrupt file)?
+    static boolean isValid(long word) {
+        return count(word) >= 0 && ((word >>> STATE_SHIFT) & 3) < STATES.length;
+    }
+
+    /**
+     * Versions count transitions modulo 2^30, so "newer" means less than half the version space ahead.
+     */
+    static boolean isNewerVersion(long version, long than) {
+        long ahead = (version - than) & VERSION_MASK;
+        return ahead != 0 && ahead < (VERSION_MASK + 1) / 2;
+    }
+
+    public long word() {
+        return word.get();
+    }
+
+    public static int count(long word) {
+        return (int) word;
+    }
+
+    public static GumballState state(long word) {
+        return STATES[(int) (word >>> STATE_SHIFT) & 3];
+    }
+
+    public static long version(long word) {
+        return word >>> VERSION_SHIFT;
+    }
+
+    /**
+     * NO_QUARTER -> HAS_QUARTER.
+     * @return the new word, or REJECTED
+     */
+    public long insertQuarter() {
+        while (true) {
+            long current = word.get();
+            if (state(current) != GumballState.NO_QUARTER) return REJECTED;
+            long next = next(current, GumballState.HAS_QUARTER, count(current));
+            if (word.compareAndSet(current, next)) return next;
+        }
+    }
+
+    /**
+     * HAS_QUARTER -> releases one gumball -> NO_QUARTER, or SOLD_OUT if that was the last one.
+     * @return the new word, or REJECTED
+     */
+    public long turnCrank() {
+        while (true) {
+            long current = word.get();
+            if (state(current) != GumballState.HAS_QUARTER) return REJECTED;
+            // a quarter is only accepted while count > 0
+            int left = count(current) - 1;
+            long next = next(current, left > 0 ? GumballState.NO_QUARTER : GumballState.SOLD_OUT, left);
+            if (word.compareAndSet(current, next)) return next;
+        }
+    }
+
+    private static long next(long current, GumballState state, int count) {
+        return pack(state, count, (version(current) + 1) & VERSION_MASK);
+    }
+
+    private static long pack(GumballState state, int count, long version) {
+        return (version << VERSION_SHIFT) | ((long) state.ordinal() << STATE_SHIFT) | (count & 0xFFFFFFFFL);
+    }
+}
@@ -0,0 +1,138 @@
+package com.dsahub.patterns.proxy.remote;
+
+import java.util.concurrent.CyclicBarrier;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Concurrent insertQuarter/turnCrank throughput on one machine core: the lock-free GumballCore against the
+ * same state machine behind a lock. Every run checks for lost sales: gumballs sold must equal the inventory drop
+ * and can never exceed the quarters accepted.
+ * Usage: GumballCoreBenchmark [threads=1,2,4,8] [millis=1000] [rounds=3]
+ */
+public class GumballCoreBenchmark {
+
+    private interface Core {
+        boolean insertQuarter();
+
+        boolean turnCrank();
+
+        int count();
+    }
+
+    private static final class CasCore implements Core {
+        private final GumballCore core = new GumballCore(Integer.MAX_VALUE);
+
+        @Override
+        public boolean insertQuarter() {
+            return core.insertQuarter() != GumballCore.REJECTED;
+        }
+
+        @Override
+        public boolean turnCrank() {
+            return core.turnCrank() != GumballCore.REJECTED;
+        }
+
+        @Override
+        public int count() {
+            return GumballCore.count(core.word());
+        }
+    }
+
+    private static final class LockedCore implements Core {
+        private GumballState state = GumballState.NO_QUARTER;
+        private int count = Integer.MAX_VALUE;
+
+        @Override
+        public synchronized boolean insertQuarter() {
+            if (state != GumballState.NO_QUARTER) return false;
+            state = GumballState.HAS_QUARTER;
+            return true;
+        }
+
+        @Override
+        public synchronized boolean turnCrank() {
+            if (state != GumballState.HAS_QUARTER) return false;
+            count--;
+            state = count > 0 ? GumballState.NO_QUARTER : GumballState.SOLD_OUT;
+            return true;
+        }
+
+        @Override
+        public synchronized int count() {
+            return count;
+        }
+    }
+
+    public static void main(String[] args) throws Exception {
+        String[] threadCounts = (args.length > 0 ? args[0] : "1,2,4,8").split(",");
+        long millis = args.length > 1 ? Long.parseLong(args[1]) : 1000;
+        int rounds = args.length > 2 ? Integer.parseInt(args[2]) : 3;
+
+        System.out.printf("%-13s %8s %14s %14s%n", "core", "threads", "ops/s", "sales/s");
+        for (String t : threadCounts) {
+            int threads = Integer.parseInt(t.trim());
+            for (String name : new String[]{"cas", "synchronized"}) {
+                double[] best = {0, 0};
+                for (int r = 0; r < rounds; r++) {
+                    double[] result = run(name.equals("cas") ? new CasCore() : new LockedCore(), threads, millis);
+                    if (result[0] > best[0]) best = result;
+                }
+                System.out.printf("%-13s %8d %14.0f %14.0f%n", name, threads, best[0], best[1]);
+            }
+        }
+    }
+
+    /**
+     * @return operations per second, sales per second
+     */
+    private static double[] run(Core core, int threads, long millis) throws Exception {
+        CyclicBarrier barrier = new CyclicBarrier(threads + 1);
+        AtomicBoolean stop = new AtomicBoolean();
+        long[][] counts = new long[threads][3];
+        Thread[] workers = new Thread[threads];
+        for (int i = 0; i < threads; i++) {
+            long[] mine = counts[i];
+            workers[i] = new Thread(() -> {
+                long ops = 0;
+                long quarters = 0;
+                long sales = 0;
+                try {
+                    barrier.await();
+                } catch (Exception e) {
+                    return;
+                }
+                while (!stop.get()) {
+                    for (int j = 0; j < 256; j++) {
+                        if (core.insertQuarter()) quarters++;
+                        if (core.turnCrank()) sales++;
+                    }
+                    ops += 512;
+                }
+                mine[0] = ops;
+                mine[1] = quarters;
+                mine[2] = sales;
+            });
+            workers[i].start();
+        }
+        barrier.await();
+        long start = System.nanoTime();
+        Thread.sleep(millis);
+        stop.set(true);
+        long ops = 0;
+        long quarters = 0;
+        long sales = 0;
+        for (int i = 0; i < threads; i++) {
+            workers[i].join();
+            ops += counts[i][0];
+            quarters += counts[i][1];
+            sales += counts[i][2];
+        }
+        double seconds = (System.nanoTime() - start) / 1e9;
+        long sold = (long) Integer.MAX_VALUE - core.count();
+        if (sold != sales || sales > quarters || quarters - sales > 1) {
+            throw new IllegalStateException("lost sales: quarters=" + quarters + " sales=" + sales
+                    + " inventory drop=" + sold);
+        }
+        return new double[]{ops / seconds, sales / seconds};
+    }
+}
@@ -0,0 +1,86 @@
+package com.dsahub.patterns.proxy.remote;
+
+import java.io.Serializable;
+
+/**
+ * A machine's inventory and state after a change. Changes made within one telemetry window are coalesced into
+ * the latest delta, which records how many changes it stands for. Epoch and version order deltas per machine:
+ * a restarted machine starts a new, higher epoch (its versions may start over), and within an epoch the
+ * version counts the machine's changes.
+ */
+public final class GumballDelta implements Serializable {
+    private static final long serialVersionUID = 2L;
+
+    private final String location;
+    private final int count;
+    private final String state;
+    private final long epoch;
+    private final long version;
+    private final int changes;
+
+    public GumballDelta(String location, int count, String state, long epoch, long version, int changes) {
+        this.location = location;
+        this.count = count;
+        this.state = state;
+        this.epoch = epoch;
+        this.version = version;
+        this.changes = changes;
+    }
+
+    /**
+     * The state a snapshot reports, as a delta that stands for no changes of its own.
+     */
+    public static GumballDelta seed(GumballSnapshot snapshot) {
+        return new GumballDelta(snapshot.getLocation(), snapshot.getCount(), snapshot.getState(),
+                snapshot.getEpoch(), snapshot.getVersion(), 0);
+    }
+
+    public String getLocation() {
+        return location;
+    }
+
+    public int getCount() {
+        return count;
+    }
+
+    public String getState() {
+        return state;
+    }
+
+    public long getEpoch() {
+        return epoch;
+    }
+
+    public long getVersion() {
+        return version;
+    }
+
+    public int getChanges() {
+        return changes;
+    }
+
+    /**
+     * A later epoch is newer; within one epoch, versions compare as GumballCore.isNewerVersion does.
+     */
+    public boolean isNewerThan(GumballDelta other) {
+        if (epoch != other.epoch) return epoch > other.epoch;
+        return GumballCore.isNewerVersion(version, other.version);
+    }
+
+    // Folds an older pending delta of the same machine into this one
+    GumballDelta coalesce(GumballDelta older) {
+        return new GumballDelta(location, count, state, epoch, version, changes + older.changes);
+    }
+
+    @Override
+    public String toString() {
+        return "GumballDelta{" +
+                "location='" + location + '\'' +
+                ", count=" + count +
+                ", state='" + state + '\'' +
+                ", epoch=" + epoch +
+                ", version=" + version +
+                ", changes=" + changes +
+                '}';
+    }
+}
@@ -0,0 +1,191 @@
+package com.dsahub.patterns.proxy.remote;
+
+import java.rmi.RemoteException;
+import java.rmi.server.UnicastRemoteObject;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Function;
+
+/**
+ * Fleet totals kept as running sums: every pushed delta adjusts its region and the fleet by the difference from
+ * the machine's previous state, so gumballs remaining and sold-out machines are read in O(1) however large the
+ * fleet is. Regions group machines by location prefix (by default the text before the first '-').
+ * Each machine's update is applied atomically; a reader may see one machine's count change before its
+ * sold-out flag, never a total that is off by more than that.
+ * A restarted machine comes back with a higher epoch, so its deltas and its seed replace whatever the old
+ * incarnation left, however its versions compare.
+ */
+public class GumballFleetAggregator extends UnicastRemoteObject implements GumballListener {
+
+    public static final class Region {
+        private final String name;
+        private final AtomicLong gumballs = new AtomicLong();
+        private final AtomicInteger machines = new AtomicInteger();
+        private final AtomicInteger soldOut = new AtomicInteger();
+
+        private Region(String name) {
+            this.name = name;
+        }
+
+        public String getName() {
+            return name;
+        }
+
+        public long getGumballs() {
+            return gumballs.get();
+        }
+
+        public int getMachines() {
+            return machines.get();
+        }
+
+        public int getSoldOut() {
+            return soldOut.get();
+        }
+
+        private void add(long gumballDelta, int machineDelta, int soldOutDelta) {
+            if (gumballDelta != 0) gumballs.addAndGet(gumballDelta);
+            if (machineDelta != 0) machines.addAndGet(machineDelta);
+            if (soldOutDelta != 0) soldOut.addAndGet(soldOutDelta);
+        }
+
+        @Override
+        public String toString() {
+            return name + ": gumballs=" + getGumballs() + " machines=" + getMachines() + " soldOut=" + getSoldOut();
+        }
+    }
+
+    private final Function<String, String> regionOf;
+    private final Map<String, GumballDelta> machines = new ConcurrentHashMap<>();
+    // the stub each location is watched through, and back, so unwatch never has to ask a dead machine
+    private final Map<String, GumballMachineRemote> watched = new ConcurrentHashMap<>();
+    private final Map<GumballMachineRemote, String> locations = new ConcurrentHashMap<>();
+    private final Map<String, Region> regions = new ConcurrentHashMap<>();
+    private final Region fleet = new Region("fleet");
+
+    public GumballFleetAggregator() throws RemoteException {
+        this(byPrefix('-'));
+    }
+
+    public GumballFleetAggregator(Function<String, String> regionOf) throws RemoteException {
+        this.regionOf = regionOf;
+    }
+
+    // The location up to the first separator, or all of it
+    public static Function<String, String> byPrefix(char separator) {
+        return location -> {
+            int end = location.indexOf(separator);
+            return end < 0 ? location : location.substring(0, end);
+        };
+    }
+
+    /**
+     * Subscribes to the machine and counts it from the snapshot subscribe() returns. Watching a restarted
+     * machine's new stub takes its location over from the old one.
+     */
+    public void watch(GumballMachineRemote machine) throws RemoteException {
+        // registered before subscribing, so a delta pushed before subscribe() returns is not taken for a stray
+        String location = machine.getLocation();
+        GumballMachineRemote previous = watched.put(location, machine);
+        if (previous != null && !previous.equals(machine)) {
+            locations.remove(previous);
+        }
+        locations.put(machine, location);
+        GumballSnapshot snapshot;
+        try {
+            snapshot = machine.subscribe(this);
+        } catch (RemoteException | RuntimeException e) {
+            locations.remove(machine);
+            watched.remove(location, machine);
+            throw e;
+        }
+        apply(GumballDelta.seed(snapshot), true);
+    }
+
+    /**
+     * Stops counting the machine, then unsubscribes. The totals drop it even when the machine cannot be reached
+     * any more; the RemoteException is still thrown.
+     */
+    public void unwatch(GumballMachineRemote machine) throws RemoteException {
+        String location = locations.remove(machine);
+        if (location != null && watched.remove(location, machine)) {
+            machines.computeIfPresent(location, (l, current) -> {
+                adjust(l, -current.getCount(), -1, -soldOut(current));
+                return null;
+            });
+        }
+        machine.unsubscribe(this);
+    }
+
+    @Override
+    public void inventoryChanged(List<GumballDelta> batch) {
+        for (GumballDelta delta : batch) {
+            apply(delta, false);
+        }
+    }
+
+    private void apply(GumballDelta update, boolean seed) {
+        // compute() runs one machine's updates one at a time, so each difference is taken against the state
+        // the totals actually hold for it
+        machines.compute(update.getLocation(), (location, current) -> {
+            if (!watched.containsKey(location)) {
+                // still in flight when the machine was unwatched
+                return current;
+            }
+            if (current == null) {
+                adjust(location, update.getCount(), 1, soldOut(update));
+                return update;
+            }
+            // an entry means deltas were pushed after subscribe() took the snapshot, so a seed of the same
+            // incarnation is never newer; one from a later epoch is the machine back after a restart
+            boolean replaces = seed ? update.getEpoch() > current.getEpoch() : update.isNewerThan(current);
+            if (!replaces) return current;
+            adjust(location, update.getCount() - current.getCount(), 0, soldOut(update) - soldOut(current));
+            return update;
+        });
+    }
+
+    private void adjust(String location, long gumballs, int machineCount, int soldOut) {
+        regions.computeIfAbsent(regionOf.apply(location), Region::new).add(gumballs, machineCount, soldOut);
+        fleet.add(gumballs, machineCount, soldOut);
+    }
+
+    private static int soldOut(GumballDelta machine) {
+        return GumballState.SOLD_OUT.getDisplayName().equals(machine.getState()) ? 1 : 0;
+    }
+
+    public long getGumballs(String region) {
+        Region r = regions.get(region);
+        return r == null ? 0 : r.getGumballs();
+    }
+
+    public int getSoldOut(String region) {
+        Region r = regions.get(region);
+        return r == null ? 0 : r.getSoldOut();
+    }
+
+    // null if no machine in that region was ever watched
+    public Region getRegion(String region) {
+        return regions.get(region);
+    }
+
+    public Collection<Region> getRegions() {
+        return regions.values();
+    }
+
+    public long getTotalGumballs() {
+        return fleet.getGumballs();
+    }
+
+    public int getTotalSoldOut() {
+        return fleet.getSoldOut();
+    }
+
+    public int getTotalMachines() {
+        return fleet.getMachines();
+    }
+}
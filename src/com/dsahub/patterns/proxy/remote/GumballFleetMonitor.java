@@ -0,0 +1,258 @@
+package com.dsahub.patterns.proxy.remote;
+
+import java.rmi.Naming;
+import java.rmi.RemoteException;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletionService;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorCompletionService;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
+
+/**
+ * Sweeps a fleet of remote gumball machines concurrently: one virtual thread per machine does the lookup and
+ * the snapshot call, a semaphore caps how many machines are being talked to at once, and each of the two calls
+ * has its own deadline, so a slow or dead machine costs one timeout instead of stalling the sweep.
+ * Results are handed over in completion order. Given a GumballLookupCache, sweeps reuse the stubs of earlier
+ * sweeps, and a stub whose snapshot call fails with a RemoteException is looked up and tried once more.
+ * RMI calls cannot be interrupted; a call that misses its deadline is abandoned and finishes in the background,
+ * so also bound it with sun.rmi.transport.tcp.responseTimeout. An abandoned call keeps its machine's permit until
+ * it really returns, so calls still hanging on dead machines count against the concurrency cap.
+ */
+public class GumballFleetMonitor implements AutoCloseable {
+
+    public enum Status {
+        OK,
+        TIMED_OUT,
+        FAILED
+    }
+
+    public static final class Result {
+        private final String url;
+        private final Status status;
+        private final GumballSnapshot snapshot;
+        private final Throwable failure;
+        private final long latencyNanos;
+
+        private Result(String url, Status status, GumballSnapshot snapshot, Throwable failure, long latencyNanos) {
+            this.url = url;
+            this.status = status;
+            this.snapshot = snapshot;
+            this.failure = failure;
+            this.latencyNanos = latencyNanos;
+        }
+
+        public String getUrl() {
+            return url;
+        }
+
+        public Status getStatus() {
+            return status;
+        }
+
+        // null unless OK
+        public GumballSnapshot getSnapshot() {
+            return snapshot;
+        }
+
+        // null if OK
+        public Throwable getFailure() {
+            return failure;
+        }
+
+        public long getLatencyNanos() {
+            return latencyNanos;
+        }
+    }
+
+    public static final class Sweep {
+        private final int machines;
+        private final int ok;
+        private final int timedOut;
+        private final int failed;
+        private final long sweepNanos;
+        private final long[] sortedLatencies;
+
+        private Sweep(int machines, int ok, int timedOut, int failed, long sweepNanos, long[] sortedLatencies) {
+            this.machines = machines;
+            this.ok = ok;
+            this.timedOut = timedOut;
+            this.failed = failed;
+            this.sweepNanos = sweepNanos;
+            this.sortedLatencies = sortedLatencies;
+        }
+
+        public int getMachines() {
+            return machines;
+        }
+
+        public int getOk() {
+            return ok;
+        }
+
+        public int getTimedOut() {
+            return timedOut;
+        }
+
+        public int getFailed() {
+            return failed;
+        }
+
+        public long getSweepNanos() {
+            return sweepNanos;
+        }
+
+        /**
+         * Per-machine latency (lookup + snapshot, semaphore wait excluded) at a percentile in [0, 100].
+         */
+        public long getLatencyAtPercentile(double percentile) {
+            if (sortedLatencies.length == 0) return 0;
+            int index = (int) Math.ceil(percentile / 100 * sortedLatencies.length) - 1;
+            return sortedLatencies[Math.max(0, Math.min(sortedLatencies.length - 1, index))];
+        }
+
+        @Override
+        public String toString() {
+            return String.format("%d machines in %d ms: ok=%d timedOut=%d failed=%d p50=%.1f ms p99=%.1f ms",
+                    machines, TimeUnit.NANOSECONDS.toMillis(sweepNanos), ok, timedOut, failed,
+                    getLatencyAtPercentile(50) / 1e6, getLatencyAtPercentile(99) / 1e6);
+        }
+    }
+
+    private final ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor();
+    private final Semaphore permits;
+    private final long callTimeoutNanos;
+    // null: a fresh Naming.lookup for every machine on every sweep
+    private final GumballLookupCache stubs;
+
+    /**
+     * @param maxConcurrency machines talked to at once
+     * @param callTimeout deadline for each of the lookup and the snapshot call
+     */
+    public GumballFleetMonitor(int maxConcurrency, long callTimeout, TimeUnit unit) {
+        this(maxConcurrency, callTimeout, unit, null);
+    }
+
+    public GumballFleetMonitor(int maxConcurrency, long callTimeout, TimeUnit unit, GumballLookupCache stubs) {
+        if (maxConcurrency <= 0) throw new IllegalArgumentException("maxConcurrency must be > 0");
+        this.permits = new Semaphore(maxConcurrency);
+        this.callTimeoutNanos = unit.toNanos(callTimeout);
+        this.stubs = stubs;
+    }
+
+    /**
+     * Reports every machine once, calling {@code onResult} on this thread as each one completes.
+     */
+    public Sweep sweep(List<String> urls, Consumer<Result> onResult) throws InterruptedException {
+        long start = System.nanoTime();
+        CompletionService<Result> completion = new ExecutorCompletionService<>(executor);
+        for (String url : urls) {
+            completion.submit(() -> report(url));
+        }
+        long[] latencies = new long[urls.size()];
+        int ok = 0;
+        int timedOut = 0;
+        int failed = 0;
+        for (int i = 0; i < urls.size(); i++) {
+            Result result;
+            try {
+                result = completion.take().get();
+            } catch (ExecutionException e) {
+                // report() catches everything it can; this is a bug, not a machine failure
+                throw new IllegalStateException(e.getCause());
+            }
+            latencies[i] = result.latencyNanos;
+            switch (result.status) {
+                case OK:
+                    ok++;
+                    break;
+                case TIMED_OUT:
+                    timedOut++;
+                    break;
+                default:
+                    failed++;
+                    break;
+            }
+            if (onResult != null) {
+                onResult.accept(result);
+            }
+        }
+        Arrays.sort(latencies);
+        return new Sweep(urls.size(), ok, timedOut, failed, System.nanoTime() - start, latencies);
+    }
+
+    private Result report(String url) throws InterruptedException {
+        permits.acquire();
+        // the permit is held by this report and by every call it started, and released by whichever ends last
+        AtomicInteger holders = new AtomicInteger(1);
+        long start = System.nanoTime();
+        try {
+            GumballSnapshot snapshot;
+            if (stubs == null) {
+                GumballMachineRemote machine = call(() -> (GumballMachineRemote) Naming.lookup(url), holders);
+                snapshot = call(machine::getSnapshot, holders);
+            } else {
+                GumballMachineRemote machine = call(() -> stubs.lookup(url), holders);
+                try {
+                    snapshot = call(machine::getSnapshot, holders);
+                } catch (ExecutionException e) {
+                    if (!(e.getCause() instanceof RemoteException)) throw e;
+                    // most likely the machine restarted and the stub points at its old incarnation
+                    stubs.invalidate(url, machine);
+                    GumballMachineRemote fresh = call(() -> stubs.lookup(url), holders);
+                    snapshot = call(fresh::getSnapshot, holders);
+                }
+            }
+            return new Result(url, Status.OK, snapshot, null, System.nanoTime() - start);
+        } catch (TimeoutException e) {
+            return new Result(url, Status.TIMED_OUT, null, e, System.nanoTime() - start);
+        } catch (ExecutionException e) {
+            return new Result(url, Status.FAILED, null, e.getCause(), System.nanoTime() - start);
+        } finally {
+            release(holders);
+        }
+    }
+
+    private <T> T call(Callable<T> remoteCall, AtomicInteger holders)
+            throws InterruptedException, ExecutionException, TimeoutException {
+        holders.incrementAndGet();
+        Future<T> future;
+        try {
+            future = executor.submit(() -> {
+                try {
+                    return remoteCall.call();
+                } finally {
+                    release(holders);
+                }
+            });
+        } catch (RuntimeException e) {
+            release(holders);
+            throw e;
+        }
+        try {
+            return future.get(callTimeoutNanos, TimeUnit.NANOSECONDS);
+        } catch (TimeoutException e) {
+            future.cancel(true);
+            throw e;
+        }
+    }
+
+    private void release(AtomicInteger holders) {
+        if (holders.decrementAndGet() == 0) {
+            permits.release();
+        }
+    }
+
+    @Override
+    public void close() {
+        executor.shutdownNow();
+    }
+}
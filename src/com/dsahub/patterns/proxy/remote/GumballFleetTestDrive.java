@@ -0,0 +1,109 @@
+package com.dsahub.patterns.proxy.remote;
+
+import java.rmi.Naming;
+import java.rmi.RemoteException;
+import java.rmi.registry.LocateRegistry;
+import java.rmi.registry.Registry;
+import java.rmi.server.UnicastRemoteObject;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Binds hundreds of machines in a local registry, a few of them slow and a few names unbound (dead), then
+ * sweeps the fleet sequentially the way GumballMonitorTestDrive does and with GumballFleetMonitor.
+ * Usage: GumballFleetTestDrive [machines=500] [slow=5] [dead=5] [concurrency=64] [timeoutMillis=1000] [port=1099]
+ */
+public class GumballFleetTestDrive {
+
+    // a machine that takes its time to answer
+    static class SlowGumballMachine extends GumballMachine {
+        private final long delayMillis;
+
+        SlowGumballMachine(String location, int count, long delayMillis) throws RemoteException {
+            super(location, count);
+            this.delayMillis = delayMillis;
+        }
+
+        @Override
+        public GumballSnapshot getSnapshot() throws RemoteException {
+            try {
+                Thread.sleep(delayMillis);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            return super.getSnapshot();
+        }
+    }
+
+    public static void main(String[] args) throws Exception {
+        int machines = args.length > 0 ? Integer.parseInt(args[0]) : 500;
+        int slow = args.length > 1 ? Integer.parseInt(args[1]) : 5;
+        int dead = args.length > 2 ? Integer.parseInt(args[2]) : 5;
+        int concurrency = args.length > 3 ? Integer.parseInt(args[3]) : 64;
+        long timeoutMillis = args.length > 4 ? Long.parseLong(args[4]) : 1000;
+        int port = args.length > 5 ? Integer.parseInt(args[5]) : 1099;
+
+        Registry registry = LocateRegistry.createRegistry(port);
+        List<GumballMachine> exported = new ArrayList<>();
+        List<String> urls = new ArrayList<>();
+        for (int i = 0; i < machines; i++) {
+            String name = "fleet_gumball_" + i;
+            GumballMachine machine = i < slow
+                    ? new SlowGumballMachine("slow-" + i, 100, 2000)
+                    : new GumballMachine("machine-" + i, 100);
+            registry.rebind(name, machine);
+            exported.add(machine);
+            urls.add("rmi://localhost:" + port + "/" + name);
+        }
+        for (int i = 0; i < dead; i++) {
+            urls.add("rmi://localhost:" + port + "/dead_gumball_" + i);
+        }
+
+        try {
+            long start = System.nanoTime();
+            int failures = 0;
+            for (String url : urls) {
+                try {
+                    ((GumballMachineRemote) Naming.lookup(url)).getSnapshot();
+                } catch (Exception e) {
+                    failures++;
+                }
+            }
+            System.out.printf("sequential: %d machines in %d ms, failed=%d%n", urls.size(),
+                    TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start), failures);
+
+            try (GumballFleetMonitor monitor =
+                         new GumballFleetMonitor(concurrency, timeoutMillis, TimeUnit.MILLISECONDS)) {
+                int[] printed = new int[1];
+                GumballFleetMonitor.Sweep sweep = monitor.sweep(urls, result -> {
+                    if (result.getStatus() != GumballFleetMonitor.Status.OK || printed[0]++ < 3) {
+                        System.out.println("  " + result.getStatus() + " " + result.getUrl()
+                                + (result.getSnapshot() != null ? " " + result.getSnapshot() : ""));
+                    }
+                });
+                System.out.println("fleet monitor: " + sweep);
+            }
+
+            // periodic sweeps with cached stubs: only the first one, and machines that restarted, pay for lookups
+            GumballLookupCache stubs = new GumballLookupCache();
+            try (GumballFleetMonitor monitor =
+                         new GumballFleetMonitor(concurrency, timeoutMillis, TimeUnit.MILLISECONDS, stubs)) {
+                System.out.println("cached, first sweep: " + monitor.sweep(urls, null) + ", " + stubs);
+                int restarts = Math.min(3, machines - slow);
+                for (int i = slow; i < slow + restarts; i++) {
+                    GumballMachine restarted = new GumballMachine("machine-" + i, 100);
+                    UnicastRemoteObject.unexportObject(exported.set(i, restarted), true);
+                    registry.rebind("fleet_gumball_" + i, restarted);
+                }
+                System.out.println("restarted " + restarts + " machines");
+                System.out.println("cached, next sweep: " + monitor.sweep(urls, null) + ", " + stubs);
+            }
+        } finally {
+            for (GumballMachine machine : exported) {
+                UnicastRemoteObject.unexportObject(machine, true);
+            }
+            UnicastRemoteObject.unexportObject(registry, true);
+        }
+    }
+}
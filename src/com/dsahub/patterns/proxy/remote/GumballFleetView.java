@@ -0,0 +1,81 @@
+package com.dsahub.patterns.proxy.remote;
+
+import java.rmi.RemoteException;
+import java.rmi.server.UnicastRemoteObject;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Live in-memory view of a fleet kept up to date by pushed telemetry instead of polling: watch() subscribes to a
+ * machine and seeds the view from the snapshot it returns, and every pushed batch updates the machines in it.
+ * A delta never replaces a newer one, since batches from different machines' JVMs may arrive in any order, and
+ * the seed is versioned like a delta, so it loses to a delta pushed before subscribe() returned and wins over
+ * anything left from an earlier incarnation of a restarted machine.
+ */
+public class GumballFleetView extends UnicastRemoteObject implements GumballListener {
+
+    private final Map<String, GumballDelta> machines = new ConcurrentHashMap<>();
+    private final LongAdder batches = new LongAdder();
+    private final LongAdder deltas = new LongAdder();
+    private final LongAdder changes = new LongAdder();
+
+    public GumballFleetView() throws RemoteException {
+    }
+
+    public void watch(GumballMachineRemote machine) throws RemoteException {
+        GumballSnapshot snapshot = machine.subscribe(this);
+        update(GumballDelta.seed(snapshot));
+    }
+
+    public void unwatch(GumballMachineRemote machine) throws RemoteException {
+        machine.unsubscribe(this);
+        machines.remove(machine.getLocation());
+    }
+
+    @Override
+    public void inventoryChanged(List<GumballDelta> batch) {
+        batches.increment();
+        for (GumballDelta delta : batch) {
+            deltas.increment();
+            changes.add(delta.getChanges());
+            update(delta);
+        }
+    }
+
+    private void update(GumballDelta delta) {
+        machines.merge(delta.getLocation(), delta, (current, update) -> update.isNewerThan(current) ? update : current);
+    }
+
+    // The latest known state of the machine at this location, or null
+    public GumballDelta get(String location) {
+        return machines.get(location);
+    }
+
+    public Collection<GumballDelta> getMachines() {
+        return machines.values();
+    }
+
+    public long getTotalCount() {
+        long total = 0;
+        for (GumballDelta machine : machines.values()) {
+            total += machine.getCount();
+        }
+        return total;
+    }
+
+    public long getBatchesReceived() {
+        return batches.sum();
+    }
+
+    public long getDeltasReceived() {
+        return deltas.sum();
+    }
+
+    // Machine changes the received deltas stand for, coalescing included
+    public long getChangesReceived() {
+        return changes.sum();
+    }
+}
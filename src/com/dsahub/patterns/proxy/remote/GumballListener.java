@@ -0,0 +1,10 @@
+package com.dsahub.patterns.proxy.remote;
+
+import java.rmi.Remote;
+import java.rmi.RemoteException;
+import java.util.List;
+
+// Remote callback for monitors subscribed to machines; one call per telemetry window with at most one delta per machine
+public interface GumballListener extends Remote {
+    void inventoryChanged(List<GumballDelta> deltas) throws RemoteException;
+}
@@ -0,0 +1,120 @@
+package com.dsahub.patterns.proxy.remote;
+
+import java.net.MalformedURLException;
+import java.rmi.Naming;
+import java.rmi.NotBoundException;
+import java.rmi.RemoteException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Keeps the stubs Naming.lookup returned, so a monitor sweeping the same URLs again pays no registry round trip
+ * and no stub deserialization. Threads asking for a URL that is still being looked up wait for that one lookup
+ * instead of starting their own. A stub is only replaced once a call through it fails with a RemoteException
+ * (the machine restarted, or went away); failed lookups are not cached.
+ */
+public class GumballLookupCache {
+
+    public interface RemoteCall<T> {
+        T call(GumballMachineRemote machine) throws RemoteException;
+    }
+
+    private final ConcurrentHashMap<String, CompletableFuture<GumballMachineRemote>> stubs =
+            new ConcurrentHashMap<>();
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private final LongAdder refreshes = new LongAdder();
+
+    public GumballMachineRemote lookup(String url)
+            throws RemoteException, NotBoundException, MalformedURLException {
+        CompletableFuture<GumballMachineRemote> stub = stubs.get(url);
+        if (stub != null) {
+            hits.increment();
+            return join(stub);
+        }
+        CompletableFuture<GumballMachineRemote> mine = new CompletableFuture<>();
+        stub = stubs.putIfAbsent(url, mine);
+        if (stub != null) {
+            // lost the race to another thread's lookup; share its result
+            hits.increment();
+            return join(stub);
+        }
+        misses.increment();
+        try {
+            GumballMachineRemote machine = (GumballMachineRemote) Naming.lookup(url);
+            mine.complete(machine);
+            return machine;
+        } catch (RemoteException | NotBoundException | MalformedURLException | RuntimeException e) {
+            // the next caller tries again; the ones already waiting get this failure
+            stubs.remove(url, mine);
+            mine.completeExceptionally(e);
+            throw e;
+        }
+    }
+
+    /**
+     * Drops the cached stub for url if it is still {@code stale}, so the next lookup goes to the registry.
+     * A stub someone else has already refreshed is left alone.
+     */
+    public void invalidate(String url, GumballMachineRemote stale) {
+        CompletableFuture<GumballMachineRemote> stub = stubs.get(url);
+        if (stub != null && stub.getNow(null) == stale && stubs.remove(url, stub)) {
+            refreshes.increment();
+        }
+    }
+
+    /**
+     * Makes {@code call} through the cached stub; if it fails with a RemoteException the stub is refreshed and
+     * the call made once more. Only for calls that are safe to repeat.
+     */
+    public <T> T call(String url, RemoteCall<T> call)
+            throws RemoteException, NotBoundException, MalformedURLException {
+        GumballMachineRemote machine = lookup(url);
+        try {
+            return call.call(machine);
+        } catch (RemoteException e) {
+            invalidate(url, machine);
+            return call.call(lookup(url));
+        }
+    }
+
+    public long getHits() {
+        return hits.sum();
+    }
+
+    public long getMisses() {
+        return misses.sum();
+    }
+
+    // stubs dropped after a failed call
+    public long getRefreshes() {
+        return refreshes.sum();
+    }
+
+    public int size() {
+        return stubs.size();
+    }
+
+    @Override
+    public String toString() {
+        return "lookups: hits=" + getHits() + " misses=" + getMisses() + " refreshes=" + getRefreshes();
+    }
+
+    private static GumballMachineRemote join(CompletableFuture<GumballMachineRemote> stub)
+            throws RemoteException, NotBoundException, MalformedURLException {
+        try {
+            return stub.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new RemoteException("interrupted waiting for lookup", e);
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof RemoteException) throw (RemoteException) cause;
+            if (cause instanceof NotBoundException) throw (NotBoundException) cause;
+            if (cause instanceof MalformedURLException) throw (MalformedURLException) cause;
+            throw (RuntimeException) cause;
+        }
+    }
+}
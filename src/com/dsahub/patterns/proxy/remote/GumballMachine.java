@@ -2,21 +2,45 @@ package com.dsahub.patterns.proxy.remote;
 
 import java.rmi.RemoteException;
 import java.rmi.server.UnicastRemoteObject;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
 
 public class GumballMachine extends UnicastRemoteObject implements GumballMachineRemote {
-    private String location;
-    private int count;
-    private String state;
+    // last epoch handed out: wall-clock microseconds, bumped so that no two machines in this JVM share one
+    private static final AtomicLong EPOCHS = new AtomicLong();
+
+    private final String location;
+    // this incarnation of the machine; a machine recreated later, here or after a restart, gets a higher one
+    private final long epoch = nextEpoch();
+    // state and count in one atomically updated word; RMI calls in on many threads
+    private final GumballCore core;
+    private final GumballTelemetry telemetry;
+    // null unless the machine's changes are journaled
+    private final GumballStore store;
+    private final int slot;
 
     public GumballMachine(String location, int count) throws java.rmi.RemoteException {
+        this(location, count, GumballTelemetry.shared());
+    }
+
+    public GumballMachine(String location, int count, GumballTelemetry telemetry) throws java.rmi.RemoteException {
+        this(location, new GumballCore(count), telemetry, null, -1);
+    }
+
+    // for GumballStore, which hands out machines restored from disk
+    GumballMachine(String location, GumballCore core, GumballTelemetry telemetry, GumballStore store, int slot)
+            throws RemoteException {
         this.location = location;
-        this.count = count;
-        this.state = (count > 0) ? "NoQuarterState" : "SoldOutState";
+        this.core = core;
+        this.telemetry = telemetry;
+        this.store = store;
+        this.slot = slot;
     }
 
     public void insertQuarter() throws java.rmi.RemoteException {
-        if (state.equals("NoQuarterState")) {
-            state = "HasQuarterState";
+        long word = core.insertQuarter();
+        if (word != GumballCore.REJECTED) {
+            changed(word);
             System.out.println(location + ": Quarter inserted.");
         } else {
             System.out.println(location + ": Cannot insert quarter now.");
@@ -24,31 +48,45 @@ public class GumballMachine extends UnicastRemoteObject implements GumballMachin
     }
 
     public void turnCrank() {
-        if (state.equals("HasQuarterState")) {
+        long word = core.turnCrank();
+        if (word != GumballCore.REJECTED) {
+            changed(word);
             System.out.println(location + ": Crank turned...");
-            releaseBall();
-            if (count > 0) {
-                state = "NoQuarter";
-            } else {
+            System.out.println(location + ": A gumball comes rolling out...");
+            if (GumballCore.state(word) == GumballState.SOLD_OUT) {
                 System.out.println(location + ": Oops, out of gumballs!");
-                state = "SoldOut";
             }
         } else {
-            System.out.println(location + ": Turn crank failed (state=" + state + ")");
+            System.out.println(location + ": Turn crank failed (state="
+                    + GumballCore.state(core.word()).getDisplayName() + ")");
         }
     }
 
-    private void releaseBall() {
-        if (count > 0) {
-            System.out.println(location + ": A gumball comes rolling out...");
-            count--;
+    private void changed(long word) {
+        if (store != null) {
+            store.append(slot, word);
         }
+        telemetry.publish(this, new GumballDelta(location, GumballCore.count(word),
+                GumballCore.state(word).getDisplayName(), epoch, GumballCore.version(word), 1));
+    }
+
+    long word() {
+        return core.word();
+    }
+
+    long epoch() {
+        return epoch;
+    }
+
+    private static long nextEpoch() {
+        long now = TimeUnit.MILLISECONDS.toMicros(System.currentTimeMillis());
+        return EPOCHS.accumulateAndGet(now, (last, time) -> Math.max(last + 1, time));
     }
 
     // --- Remote interface methods ---
     @Override
     public int getCount() throws RemoteException {
-        return count;
+        return GumballCore.count(core.word());
     }
 
     @Override
@@ -58,15 +96,35 @@ public class GumballMachine extends UnicastRemoteObject implements GumballMachin
 
     @Override
     public String getState() throws RemoteException {
-        return state;
+        return GumballCore.state(core.word()).getDisplayName();
+    }
+
+    @Override
+    public GumballSnapshot getSnapshot() throws RemoteException {
+        // one read, so count and state always belong together
+        long word = core.word();
+        return new GumballSnapshot(location, GumballCore.count(word), GumballCore.state(word).getDisplayName(),
+                epoch, GumballCore.version(word), System.currentTimeMillis());
+    }
+
+    @Override
+    public GumballSnapshot subscribe(GumballListener listener) throws RemoteException {
+        telemetry.subscribe(this, listener);
+        return getSnapshot();
+    }
+
+    @Override
+    public void unsubscribe(GumballListener listener) throws RemoteException {
+        telemetry.unsubscribe(this, listener);
     }
 
     @Override
     public String toString() {
+        long word = core.word();
         return "GumballMachine{" +
                 "location='" + location + '\'' +
-                ", count=" + count +
-                ", state='" + state + '\'' +
+                ", count=" + GumballCore.count(word) +
+                ", state='" + GumballCore.state(word).getDisplayName() + '\'' +
                 '}';
     }
 }
@@ -7,4 +7,12 @@ public interface GumballMachineRemote extends Remote {
     int getCount() throws RemoteException;
     String getLocation() throws RemoteException;
     String getState() throws RemoteException;
+
+    // Location, count and state in one round trip, consistent with each other
+    GumballSnapshot getSnapshot() throws RemoteException;
+
+    // Push changes to the listener from now on; returns the state to start the listener's view from
+    GumballSnapshot subscribe(GumballListener listener) throws RemoteException;
+
+    void unsubscribe(GumballListener listener) throws RemoteException;
 }
@@ -1,8 +1,14 @@
 package com.dsahub.patterns.proxy.remote;
 
+import java.nio.file.Paths;
 import java.rmi.Naming;
 import java.rmi.registry.LocateRegistry;
+import java.util.concurrent.TimeUnit;
 
+/**
+ * Usage: GumballMachineTestDrive [storeDir=gumball-store]
+ * Machine inventory and state survive a restart of this server: the counts below only seed the first run.
+ */
 public class GumballMachineTestDrive {
     public static void main(String[] args) {
         try {
@@ -14,11 +20,13 @@ public class GumballMachineTestDrive {
                 System.out.println("RMI registry may already be running");
             }
 
-            // Create and bind machines
+            // Create (or restore) and bind machines
+            GumballStore store = new GumballStore(Paths.get(args.length > 0 ? args[0] : "gumball-store"),
+                    10, TimeUnit.SECONDS);
             GumballMachine chennaiMachine =
-                    new GumballMachine("Chennai", 5);
+                    store.machine("Chennai", 5);
             GumballMachine bangaloreMachine =
-                    new GumballMachine("Bangalore", 2);
+                    store.machine("Bangalore", 2);
 
             Naming.rebind("rmi://localhost/chennai_gumball", chennaiMachine);
             Naming.rebind("rmi://localhost/bangalore_gumball", bangaloreMachine);
@@ -2,16 +2,28 @@ package com.dsahub.patterns.proxy.remote;
 
 public class GumballMonitor {
     private GumballMachineRemote gumballMachine;
+    // set when the stub comes from a lookup cache and is refreshed on failure
+    private GumballLookupCache stubs;
+    private String url;
 
     public GumballMonitor(GumballMachineRemote gumballMachine) {
         this.gumballMachine = gumballMachine;
     }
 
+    public GumballMonitor(GumballLookupCache stubs, String url) {
+        this.stubs = stubs;
+        this.url = url;
+    }
+
     public void report() {
         try {
-            System.out.println("Location: " + gumballMachine.getLocation());
-            System.out.println("Inventory: " + gumballMachine.getCount() + " gumballs");
-            System.out.println("State: " + gumballMachine.getState());
+            // one round trip, and a view that cannot tear between fields
+            GumballSnapshot snapshot = stubs != null
+                    ? stubs.call(url, GumballMachineRemote::getSnapshot)
+                    : gumballMachine.getSnapshot();
+            System.out.println("Location: " + snapshot.getLocation());
+            System.out.println("Inventory: " + snapshot.getCount() + " gumballs");
+            System.out.println("State: " + snapshot.getState());
             System.out.println("---------------------------");
         } catch (Exception e) {
             System.out.println("Could not retrieve gumball machine data.");
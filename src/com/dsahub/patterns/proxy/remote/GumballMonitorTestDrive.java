@@ -1,9 +1,14 @@
 package com.dsahub.patterns.proxy.remote;
 
-import java.rmi.Naming;
-
+/**
+ * Usage: GumballMonitorTestDrive [sweeps=1] [intervalMillis=5000]
+ * Stubs are looked up once and reused across sweeps; a machine that restarted is looked up again.
+ */
 public class GumballMonitorTestDrive {
     public static void main(String[] args) {
+        int sweeps = args.length > 0 ? Integer.parseInt(args[0]) : 1;
+        long intervalMillis = args.length > 1 ? Long.parseLong(args[1]) : 5000;
+        GumballLookupCache stubs = new GumballLookupCache();
         try {
             // Lookup remote machines (in real HFDP these URLs come from args[])
             String[] locations = {
@@ -11,12 +16,17 @@ public class GumballMonitorTestDrive {
                     "rmi://localhost/bangalore_gumball"
             };
 
-            for (String location : locations) {
-                GumballMachineRemote machine =
-                        (GumballMachineRemote) Naming.lookup(location);
+            GumballMonitor[] monitors = new GumballMonitor[locations.length];
+            for (int i = 0; i < locations.length; i++) {
+                monitors[i] = new GumballMonitor(stubs, locations[i]);
+            }
 
-                GumballMonitor monitor = new GumballMonitor(machine);
-                monitor.report();
+            for (int sweep = 0; sweep < sweeps; sweep++) {
+                if (sweep > 0) Thread.sleep(intervalMillis);
+                for (GumballMonitor monitor : monitors) {
+                    monitor.report();
+                }
+                System.out.println(stubs);
             }
 
         } catch (Exception e) {
@@ -0,0 +1,176 @@
+package com.dsahub.patterns.proxy.remote;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.SocketChannel;
+import java.rmi.RemoteException;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * One connection to a GumballNioServer, shared by any number of threads and stubs. Every call gets a request
+ * id and a future; calls are written as soon as they are made, without waiting for earlier answers, and a
+ * reader thread completes the futures as responses arrive.
+ * lookup() returns a GumballMachineRemote that can stand in for a Naming.lookup stub wherever only the
+ * read-only calls are used; subscribe/unsubscribe need a callback object and stay RMI-only.
+ */
+public class GumballNioClient implements Closeable {
+
+    private final SocketChannel channel;
+    private final Thread reader;
+    private final long timeoutMillis;
+    private final AtomicInteger nextId = new AtomicInteger();
+    private final Map<Integer, CompletableFuture<ByteBuffer>> inFlight = new ConcurrentHashMap<>();
+    // guarded by itself; writers take turns so frames are never interleaved
+    private final ByteBuffer out = ByteBuffer.allocate(GumballNioProtocol.MAX_FRAME);
+    private volatile IOException failure;
+
+    public GumballNioClient(int port) throws IOException {
+        this(new InetSocketAddress(InetAddress.getLoopbackAddress(), port), 5000);
+    }
+
+    public GumballNioClient(InetSocketAddress server, long timeoutMillis) throws IOException {
+        this.channel = SocketChannel.open(server);
+        this.channel.socket().setTcpNoDelay(true);
+        this.timeoutMillis = timeoutMillis;
+        this.reader = new Thread(this::readResponses, "GumballNioClient");
+        this.reader.setDaemon(true);
+        this.reader.start();
+    }
+
+    /**
+     * The NIO counterpart of Naming.lookup: resolves a name bound on the server to a stub.
+     */
+    public GumballNioStub lookup(String name) throws RemoteException {
+        int handle = call(GumballNioProtocol.LOOKUP, -1, name).getInt();
+        return new GumballNioStub(this, handle);
+    }
+
+    public int getInFlight() {
+        return inFlight.size();
+    }
+
+    @Override
+    public void close() throws IOException {
+        channel.close();
+        try {
+            reader.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * Sends one request; the future completes with the response payload.
+     */
+    CompletableFuture<ByteBuffer> send(byte op, int handle, String name) {
+        return send(nextId.getAndIncrement(), op, handle, name);
+    }
+
+    /**
+     * Sends one request and waits for its response. A call that gives up waiting forgets the request, and a
+     * response that still comes is dropped.
+     */
+    ByteBuffer call(byte op, int handle, String name) throws RemoteException {
+        int id = nextId.getAndIncrement();
+        CompletableFuture<ByteBuffer> future = send(id, op, handle, name);
+        try {
+            return future.get(timeoutMillis, TimeUnit.MILLISECONDS);
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            throw cause instanceof RemoteException ? (RemoteException) cause
+                    : new RemoteException("NIO call failed", cause);
+        } catch (TimeoutException e) {
+            inFlight.remove(id);
+            throw new RemoteException("no response within " + timeoutMillis + " ms", e);
+        } catch (InterruptedException e) {
+            inFlight.remove(id);
+            Thread.currentThread().interrupt();
+            throw new RemoteException("interrupted", e);
+        }
+    }
+
+    private CompletableFuture<ByteBuffer> send(int id, byte op, int handle, String name) {
+        CompletableFuture<ByteBuffer> future = new CompletableFuture<>();
+        IOException failed = failure;
+        if (failed != null) {
+            future.completeExceptionally(failed);
+            return future;
+        }
+        if (name != null && !GumballNioProtocol.fits(name)) {
+            future.completeExceptionally(new RemoteException("name too long for a frame"));
+            return future;
+        }
+        inFlight.put(id, future);
+        int length = GumballNioProtocol.REQUEST_HEADER - 4 + (name == null ? 0 : GumballNioProtocol.stringSize(name));
+        try {
+            synchronized (out) {
+                out.clear();
+                out.putInt(length).putInt(id).put(op).putInt(handle);
+                if (name != null) GumballNioProtocol.putString(out, name);
+                out.flip();
+                while (out.hasRemaining()) {
+                    channel.write(out);
+                }
+            }
+        } catch (IOException e) {
+            inFlight.remove(id);
+            future.completeExceptionally(e);
+        }
+        return future;
+    }
+
+    private void readResponses() {
+        ByteBuffer in = ByteBuffer.allocate(GumballNioProtocol.MAX_FRAME);
+        try {
+            while (channel.read(in) >= 0) {
+                in.flip();
+                while (in.remaining() >= 4) {
+                    int length = in.getInt(in.position());
+                    if (length < GumballNioProtocol.RESPONSE_HEADER - 4 || length > GumballNioProtocol.MAX_FRAME - 4) {
+                        // out of step with the server; nothing after this can be trusted
+                        throw new IOException("bad frame length " + length);
+                    }
+                    if (in.remaining() < 4 + length) break;
+                    in.getInt();
+                    int end = in.position() + length;
+                    int id = in.getInt();
+                    byte status = in.get();
+                    // the caller parses its payload later, after this buffer has moved on
+                    ByteBuffer payload = ByteBuffer.allocate(end - in.position());
+                    payload.put(in.slice(in.position(), payload.capacity())).flip();
+                    in.position(end);
+                    CompletableFuture<ByteBuffer> future = inFlight.remove(id);
+                    if (future == null) continue;
+                    if (status == GumballNioProtocol.OK) {
+                        future.complete(payload);
+                    } else {
+                        future.completeExceptionally(new RemoteException(GumballNioProtocol.getString(payload)));
+                    }
+                }
+                in.compact();
+            }
+            failure = new IOException("connection closed by server");
+        } catch (IOException e) {
+            failure = e;
+            try {
+                channel.close();
+            } catch (IOException closing) {
+                // already failed
+            }
+        }
+        // nothing more will arrive for the calls still waiting
+        for (Integer id : inFlight.keySet()) {
+            CompletableFuture<ByteBuffer> future = inFlight.remove(id);
+            if (future != null) future.completeExceptionally(failure);
+        }
+    }
+}
@@ -0,0 +1,87 @@
+package com.dsahub.patterns.proxy.remote;
+
+import java.rmi.RemoteException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+/**
+ * Edge cases of the NIO transport that a benchmark never hits. Thousands of large responses are pipelined on one
+ * connection without the caller reading in between, so the server's output buffer fills and requests wait in its
+ * input buffer for room; every call must still be answered. Then names and locations too long for a frame must
+ * be refused up front, and an error reply about a long name must not take the server down.
+ * Exits with 1 on any failure.
+ * Usage: GumballNioPipelineCheck [calls=2000] [locationBytes=2000]
+ */
+public class GumballNioPipelineCheck {
+
+    public static void main(String[] args) throws Exception {
+        int calls = args.length > 0 ? Integer.parseInt(args[0]) : 2000;
+        int locationBytes = args.length > 1 ? Integer.parseInt(args[1]) : 2000;
+
+        String location = "x".repeat(locationBytes);
+        GumballMachine machine = new GumballMachine(location, 5);
+        boolean ok = true;
+        try (GumballNioServer server = new GumballNioServer(0);
+             GumballNioClient client = new GumballNioClient(server.getPort())) {
+            server.bind("big_gumball", machine);
+            GumballNioStub stub = client.lookup("big_gumball");
+
+            long start = System.nanoTime();
+            List<CompletableFuture<GumballSnapshot>> answers = new ArrayList<>(calls);
+            for (int i = 0; i < calls; i++) {
+                answers.add(stub.getSnapshotAsync());
+            }
+            try {
+                CompletableFuture.allOf(answers.toArray(new CompletableFuture<?>[0])).get(10, TimeUnit.SECONDS);
+                int wrong = 0;
+                for (CompletableFuture<GumballSnapshot> answer : answers) {
+                    if (!answer.join().getLocation().equals(location)) wrong++;
+                }
+                System.out.printf("%d pipelined snapshots of %d bytes answered in %.1f ms, %d wrong%n", calls,
+                        locationBytes, (System.nanoTime() - start) / 1e6, wrong);
+                ok &= wrong == 0;
+            } catch (TimeoutException e) {
+                System.out.println("FAIL: pipelined calls stalled with " + client.getInFlight() + " unanswered");
+                ok = false;
+            }
+
+            String tooLong = "n".repeat(GumballNioProtocol.MAX_STRING_BYTES + 1);
+            ok &= refused("lookup of an oversize name", () -> client.lookup(tooLong));
+            ok &= refused("binding an oversize name", () -> server.bind(tooLong, machine));
+            ok &= refused("binding an oversize location",
+                    () -> server.bind("long_location", new GumballMachine(tooLong, 1)));
+
+            // fits a request, but "not bound: " + name would not fit a reply without truncation
+            String longest = "n".repeat(GumballNioProtocol.MAX_STRING_BYTES);
+            try {
+                client.lookup(longest);
+                System.out.println("FAIL: unbound name was found");
+                ok = false;
+            } catch (RemoteException e) {
+                System.out.println("unbound long name: error of " + e.getMessage().length() + " chars");
+            }
+            int count = stub.getCount();
+            System.out.println("server still answering after it: count=" + count);
+        }
+        System.out.println(ok ? "PASS" : "FAIL");
+        System.exit(ok ? 0 : 1);
+    }
+
+    private interface Call {
+        void run() throws Exception;
+    }
+
+    private static boolean refused(String what, Call call) {
+        try {
+            call.run();
+        } catch (Exception e) {
+            System.out.println(what + ": refused (" + e.getMessage() + ")");
+            return true;
+        }
+        System.out.println("FAIL: " + what + " was accepted");
+        return false;
+    }
+}
@@ -0,0 +1,76 @@
+package com.dsahub.patterns.proxy.remote;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Fixed-layout binary frames of the NIO transport, all big-endian and length-prefixed so many can be
+ * pipelined on one connection. Responses carry the request id and may be matched in any order.
+ * <pre>
+ *   request:  int length | int requestId | byte op | int handle | [LOOKUP: short nameLength | name UTF-8]
+ *   response: int length | int requestId | byte status | payload
+ *     LOOKUP       int handle
+ *     GET_COUNT    int count
+ *     GET_STATE    byte GumballState ordinal
+ *     GET_LOCATION short length | UTF-8
+ *     GET_SNAPSHOT int count | byte state | long epoch | int version | long takenAtMillis
+ *                  | short length | location UTF-8
+ *     any ERROR    short length | message UTF-8
+ * </pre>
+ * length counts the bytes after itself; no frame is longer than MAX_FRAME. Strings are at most MAX_STRING_BYTES
+ * of UTF-8, so even the largest response (a snapshot) fits a frame: names and locations that are longer are
+ * refused, error messages are cut short.
+ */
+final class GumballNioProtocol {
+
+    static final byte LOOKUP = 1;
+    static final byte GET_COUNT = 2;
+    static final byte GET_STATE = 3;
+    static final byte GET_LOCATION = 4;
+    static final byte GET_SNAPSHOT = 5;
+
+    static final byte OK = 0;
+    static final byte ERROR = 1;
+
+    static final int REQUEST_HEADER = 4 + 4 + 1 + 4;
+    static final int RESPONSE_HEADER = 4 + 4 + 1;
+    static final int MAX_FRAME = 64 * 1024;
+    // room for the fixed part of any frame (a snapshot response has 36 bytes before its location string)
+    static final int MAX_STRING_BYTES = MAX_FRAME - 64;
+    static final int MAX_MESSAGE_CHARS = 1024;
+
+    private GumballNioProtocol() {
+    }
+
+    static void putString(ByteBuffer buffer, String s) {
+        byte[] bytes = s.getBytes(StandardCharsets.UTF_8);
+        if (bytes.length > MAX_STRING_BYTES) {
+            throw new IllegalArgumentException("string of " + bytes.length + " bytes does not fit a frame");
+        }
+        buffer.putShort((short) bytes.length).put(bytes);
+    }
+
+    /**
+     * An error message short enough to always fit (3 bytes of UTF-8 per char at most, a surrogate pair 4 per 2).
+     */
+    static String truncate(String message) {
+        if (message.length() <= MAX_MESSAGE_CHARS) return message;
+        int end = MAX_MESSAGE_CHARS - 3;
+        if (Character.isHighSurrogate(message.charAt(end - 1))) end--;
+        return message.substring(0, end) + "...";
+    }
+
+    static String getString(ByteBuffer buffer) {
+        byte[] bytes = new byte[buffer.getShort() & 0xFFFF];
+        buffer.get(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    static int stringSize(String s) {
+        return 2 + s.getBytes(StandardCharsets.UTF_8).length;
+    }
+
+    static boolean fits(String s) {
+        return stringSize(s) - 2 <= MAX_STRING_BYTES;
+    }
+}
@@ -0,0 +1,230 @@
+package com.dsahub.patterns.proxy.remote;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.ClosedSelectorException;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.rmi.RemoteException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Serves bound GumballMachineRemote objects over the binary GumballNioProtocol: one selector thread, any number
+ * of client connections, each carrying any number of pipelined requests. The machine calls are lock-free reads,
+ * so they run right on the selector thread and responses go out in request order per connection.
+ */
+public class GumballNioServer implements Closeable {
+
+    private static final class Connection {
+        final ByteBuffer in = ByteBuffer.allocate(GumballNioProtocol.MAX_FRAME);
+        // a client that stops reading stops being read from once this backs up
+        final ByteBuffer out = ByteBuffer.allocate(4 * GumballNioProtocol.MAX_FRAME);
+    }
+
+    private final Map<String, Integer> handles = new ConcurrentHashMap<>();
+    private final List<GumballMachineRemote> machines = new ArrayList<>();
+    private final ServerSocketChannel server;
+    private final Selector selector;
+    private final Thread thread;
+    private volatile boolean closed;
+
+    /**
+     * Listens on the loopback interface; port 0 picks a free one.
+     */
+    public GumballNioServer(int port) throws IOException {
+        this.selector = Selector.open();
+        this.server = ServerSocketChannel.open();
+        this.server.bind(new InetSocketAddress(InetAddress.getLoopbackAddress(), port));
+        this.server.configureBlocking(false);
+        this.server.register(selector, SelectionKey.OP_ACCEPT);
+        this.thread = new Thread(this::serve, "GumballNioServer");
+        this.thread.setDaemon(true);
+        this.thread.start();
+    }
+
+    public int getPort() {
+        return server.socket().getLocalPort();
+    }
+
+    /**
+     * @throws IllegalArgumentException if the name or the machine's location is too long for a frame
+     */
+    public synchronized void bind(String name, GumballMachineRemote machine) throws RemoteException {
+        if (!GumballNioProtocol.fits(name)) throw new IllegalArgumentException("name too long for a frame");
+        if (!GumballNioProtocol.fits(machine.getLocation())) {
+            throw new IllegalArgumentException("location too long for a frame");
+        }
+        machines.add(machine);
+        handles.put(name, machines.size() - 1);
+    }
+
+    @Override
+    public void close() throws IOException {
+        closed = true;
+        selector.wakeup();
+        try {
+            thread.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private void serve() {
+        try {
+            while (!closed) {
+                selector.select();
+                for (SelectionKey key : selector.selectedKeys()) {
+                    try {
+                        if (key.isAcceptable()) {
+                            accept();
+                        } else {
+                            if (key.isReadable()) read(key);
+                            if (key.isValid() && key.isWritable()) process(key);
+                        }
+                    } catch (IOException | RuntimeException e) {
+                        // one broken client must not take the server down
+                        key.cancel();
+                        key.channel().close();
+                    }
+                }
+                selector.selectedKeys().clear();
+            }
+        } catch (IOException | ClosedSelectorException e) {
+            // fall through to shutdown
+        }
+        // clients blocked on an answer see end-of-stream instead of waiting out their timeout
+        for (SelectionKey key : selector.keys()) {
+            try {
+                key.channel().close();
+            } catch (IOException e) {
+                // closing anyway
+            }
+        }
+        try {
+            selector.close();
+        } catch (IOException e) {
+            // nothing left to release
+        }
+    }
+
+    private void accept() throws IOException {
+        SocketChannel client = server.accept();
+        if (client == null) return;
+        client.configureBlocking(false);
+        client.socket().setTcpNoDelay(true);
+        client.register(selector, SelectionKey.OP_READ, new Connection());
+    }
+
+    private void read(SelectionKey key) throws IOException {
+        Connection c = (Connection) key.attachment();
+        SocketChannel channel = (SocketChannel) key.channel();
+        if (channel.read(c.in) < 0) {
+            key.cancel();
+            channel.close();
+            return;
+        }
+        process(key);
+    }
+
+    /**
+     * Answers every complete request frame while there is room for the answer, and flushes. Requests left
+     * waiting for room are picked up as soon as a flush frees it: a client that has sent everything it wants
+     * answered may never make the channel readable again.
+     */
+    private void process(SelectionKey key) throws IOException {
+        Connection c = (Connection) key.attachment();
+        do {
+            c.in.flip();
+            while (c.in.remaining() >= 4 && c.out.remaining() >= GumballNioProtocol.MAX_FRAME) {
+                int length = c.in.getInt(c.in.position());
+                if (length < GumballNioProtocol.REQUEST_HEADER - 4 || length > GumballNioProtocol.MAX_FRAME - 4) {
+                    throw new IOException("bad frame length " + length);
+                }
+                if (c.in.remaining() < 4 + length) break;
+                int end = c.in.position() + 4 + length;
+                c.in.getInt();
+                handle(c, c.in);
+                c.in.position(end);
+            }
+            c.in.compact();
+            write(key);
+        } while (c.out.remaining() >= GumballNioProtocol.MAX_FRAME && hasFrame(c.in));
+    }
+
+    // in is in fill mode, as compact() leaves it
+    private static boolean hasFrame(ByteBuffer in) {
+        return in.position() >= 4 && in.position() - 4 >= in.getInt(0);
+    }
+
+    private void handle(Connection c, ByteBuffer request) {
+        int requestId = request.getInt();
+        byte op = request.get();
+        int handle = request.getInt();
+        ByteBuffer out = c.out;
+        int start = out.position();
+        out.putInt(0).putInt(requestId).put(GumballNioProtocol.OK);
+        try {
+            if (op == GumballNioProtocol.LOOKUP) {
+                String name = GumballNioProtocol.getString(request);
+                Integer h = handles.get(name);
+                if (h == null) throw new RemoteException("not bound: " + name);
+                out.putInt(h);
+            } else {
+                GumballMachineRemote machine;
+                synchronized (this) {
+                    if (handle < 0 || handle >= machines.size()) throw new RemoteException("bad handle " + handle);
+                    machine = machines.get(handle);
+                }
+                switch (op) {
+                    case GumballNioProtocol.GET_COUNT:
+                        out.putInt(machine.getCount());
+                        break;
+                    case GumballNioProtocol.GET_STATE:
+                        out.put((byte) stateOf(machine.getState()).ordinal());
+                        break;
+                    case GumballNioProtocol.GET_LOCATION:
+                        GumballNioProtocol.putString(out, machine.getLocation());
+                        break;
+                    case GumballNioProtocol.GET_SNAPSHOT:
+                        GumballSnapshot s = machine.getSnapshot();
+                        out.putInt(s.getCount()).put((byte) stateOf(s.getState()).ordinal())
+                                .putLong(s.getEpoch()).putInt((int) s.getVersion()).putLong(s.getTakenAtMillis());
+                        GumballNioProtocol.putString(out, s.getLocation());
+                        break;
+                    default:
+                        throw new RemoteException("unknown op " + op);
+                }
+            }
+        } catch (RemoteException | RuntimeException e) {
+            out.position(start);
+            out.putInt(0).putInt(requestId).put(GumballNioProtocol.ERROR);
+            GumballNioProtocol.putString(out, GumballNioProtocol.truncate(String.valueOf(e.getMessage())));
+        }
+        out.putInt(start, out.position() - start - 4);
+    }
+
+    private static GumballState stateOf(String displayName) throws RemoteException {
+        for (GumballState state : GumballState.values()) {
+            if (state.getDisplayName().equals(displayName)) return state;
+        }
+        throw new RemoteException("unknown state " + displayName);
+    }
+
+    private void write(SelectionKey key) throws IOException {
+        Connection c = (Connection) key.attachment();
+        c.out.flip();
+        ((SocketChannel) key.channel()).write(c.out);
+        c.out.compact();
+        boolean pending = c.out.position() > 0;
+        boolean room = c.out.remaining() >= GumballNioProtocol.MAX_FRAME;
+        key.interestOps((pending ? SelectionKey.OP_WRITE : 0) | (room ? SelectionKey.OP_READ : 0));
+    }
+}
@@ -0,0 +1,78 @@
+package com.dsahub.patterns.proxy.remote;
+
+import java.nio.ByteBuffer;
+import java.rmi.RemoteException;
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * A GumballMachineRemote reached over a GumballNioClient connection instead of RMI.
+ * The blocking calls behave like the RMI stub's; the async ones let a single thread keep many requests in
+ * flight on the one connection.
+ */
+public class GumballNioStub implements GumballMachineRemote {
+
+    private final GumballNioClient client;
+    private final int handle;
+
+    GumballNioStub(GumballNioClient client, int handle) {
+        this.client = client;
+        this.handle = handle;
+    }
+
+    @Override
+    public int getCount() throws RemoteException {
+        return client.call(GumballNioProtocol.GET_COUNT, handle, null).getInt();
+    }
+
+    @Override
+    public String getLocation() throws RemoteException {
+        return GumballNioProtocol.getString(client.call(GumballNioProtocol.GET_LOCATION, handle, null));
+    }
+
+    @Override
+    public String getState() throws RemoteException {
+        return stateName(client.call(GumballNioProtocol.GET_STATE, handle, null));
+    }
+
+    @Override
+    public GumballSnapshot getSnapshot() throws RemoteException {
+        return snapshot(client.call(GumballNioProtocol.GET_SNAPSHOT, handle, null));
+    }
+
+    public CompletableFuture<Integer> getCountAsync() {
+        return client.send(GumballNioProtocol.GET_COUNT, handle, null).thenApply(ByteBuffer::getInt);
+    }
+
+    public CompletableFuture<GumballSnapshot> getSnapshotAsync() {
+        return client.send(GumballNioProtocol.GET_SNAPSHOT, handle, null).thenApply(GumballNioStub::snapshot);
+    }
+
+    @Override
+    public GumballSnapshot subscribe(GumballListener listener) throws RemoteException {
+        throw new RemoteException("subscribe needs the RMI transport");
+    }
+
+    @Override
+    public void unsubscribe(GumballListener listener) throws RemoteException {
+        throw new RemoteException("unsubscribe needs the RMI transport");
+    }
+
+    private static String stateName(ByteBuffer payload) {
+        return GumballState.values()[payload.get()].getDisplayName();
+    }
+
+    private static GumballSnapshot snapshot(ByteBuffer payload) {
+        int count = payload.getInt();
+        String state = stateName(payload);
+        long epoch = payload.getLong();
+        long version = payload.getInt() & 0xFFFFFFFFL;
+        long takenAtMillis = payload.getLong();
+        return new GumballSnapshot(GumballNioProtocol.getString(payload), count, state, epoch, version,
+                takenAtMillis);
+    }
+
+    @Override
+    public String toString() {
+        return "GumballNioStub{handle=" + handle + '}';
+    }
+}
@@ -0,0 +1,164 @@
+package com.dsahub.patterns.proxy.remote;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.rmi.server.UnicastRemoteObject;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Crash recovery check for GumballStore. A forked server JVM brings up a fleet of journaled machines, sells
+ * gumballs at random while checkpoints run in the background, and halts without any shutdown while they are
+ * still running. This JVM then recovers the store, times the restart, and checks every machine's count and state
+ * against a replay of the same random sales.
+ * Usage: GumballRecoveryTestDrive [machines=100000] [changes=300000] [checkpointMillis=200] [seed=42]
+ */
+public class GumballRecoveryTestDrive {
+
+    private static final String[] REGIONS = {"north", "south", "east", "west"};
+    private static final int MAX_INITIAL_COUNT = 20;
+
+    public static void main(String[] args) throws Exception {
+        if (args.length > 0 && args[0].equals("crash")) {
+            crash(Paths.get(args[1]), Integer.parseInt(args[2]), Integer.parseInt(args[3]),
+                    Long.parseLong(args[4]), Long.parseLong(args[5]));
+            return;
+        }
+        int machines = args.length > 0 ? Integer.parseInt(args[0]) : 100000;
+        int changes = args.length > 1 ? Integer.parseInt(args[1]) : 300000;
+        long checkpointMillis = args.length > 2 ? Long.parseLong(args[2]) : 200;
+        long seed = args.length > 3 ? Long.parseLong(args[3]) : 42;
+
+        Path dir = Files.createTempDirectory("gumball-recovery");
+        try {
+            String crashed = fork(dir, machines, changes, checkpointMillis, seed);
+            System.out.println("server: " + crashed);
+
+            // what every machine must look like after exactly those sales
+            int[] counts = new int[machines];
+            GumballState[] states = new GumballState[machines];
+            simulate(machines, changes, seed, counts, states);
+
+            GumballStore store = new GumballStore(dir);
+            System.out.printf("restart: %d machines recovered in %.1f ms (%d journal records replayed)%n",
+                    store.getMachines(), store.getRecoveryNanos() / 1e6, store.getReplayedRecords());
+            int wrong = 0;
+            for (int i = 0; i < machines; i++) {
+                GumballSnapshot s = store.getSnapshot(location(i));
+                if (s == null || s.getCount() != counts[i] || !s.getState().equals(states[i].getDisplayName())) {
+                    if (wrong++ < 5) {
+                        System.out.println("  MISMATCH " + location(i) + ": recovered " + s + ", expected "
+                                + counts[i] + " " + states[i].getDisplayName());
+                    }
+                }
+            }
+            System.out.println(wrong == 0 ? "all " + machines + " machines recovered exactly"
+                    : wrong + " machines recovered wrong");
+
+            // exporting the RMI objects is RMI's cost, not the store's; shown apart
+            long start = System.nanoTime();
+            List<GumballMachine> fleet = new ArrayList<>();
+            for (int i = 0; i < machines; i++) {
+                fleet.add(store.machine(location(i), 0));
+            }
+            System.out.printf("exporting %d restored GumballMachines took %d ms%n", machines,
+                    TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start));
+            store.close();
+            for (GumballMachine machine : fleet) {
+                UnicastRemoteObject.unexportObject(machine, true);
+            }
+
+            GumballStore clean = new GumballStore(dir);
+            System.out.printf("restart after clean shutdown: %d machines in %.1f ms (%d journal records)%n",
+                    clean.getMachines(), clean.getRecoveryNanos() / 1e6, clean.getReplayedRecords());
+            clean.close();
+            if (wrong > 0) System.exit(1);
+        } finally {
+            try (DirectoryStream<Path> files = Files.newDirectoryStream(dir)) {
+                for (Path file : files) {
+                    Files.delete(file);
+                }
+            }
+            Files.delete(dir);
+        }
+    }
+
+    private static String location(int i) {
+        return REGIONS[i % REGIONS.length] + "-" + i;
+    }
+
+    /**
+     * The forked server: runs the sales, then dies as abruptly as a kill -9 would leave it.
+     */
+    private static void crash(Path dir, int machines, int changes, long checkpointMillis, long seed)
+            throws IOException {
+        PrintStream console = System.out;
+        System.setOut(new PrintStream(OutputStream.nullOutputStream()));
+        GumballStore store = new GumballStore(dir, checkpointMillis, TimeUnit.MILLISECONDS);
+        Random random = new Random(seed);
+        GumballMachine[] fleet = new GumballMachine[machines];
+        for (int i = 0; i < machines; i++) {
+            fleet[i] = store.machine(location(i), random.nextInt(MAX_INITIAL_COUNT));
+        }
+        for (int k = 0; k < changes; k++) {
+            GumballMachine machine = fleet[random.nextInt(machines)];
+            if (random.nextBoolean()) {
+                machine.insertQuarter();
+            } else {
+                machine.turnCrank();
+            }
+        }
+        console.println("halted after " + changes + " changes, " + store.getCheckpoints() + " checkpoints");
+        console.flush();
+        Runtime.getRuntime().halt(137);
+    }
+
+    private static void simulate(int machines, int changes, long seed, int[] counts, GumballState[] states) {
+        Random random = new Random(seed);
+        for (int i = 0; i < machines; i++) {
+            counts[i] = random.nextInt(MAX_INITIAL_COUNT);
+            states[i] = counts[i] > 0 ? GumballState.NO_QUARTER : GumballState.SOLD_OUT;
+        }
+        for (int k = 0; k < changes; k++) {
+            int i = random.nextInt(machines);
+            if (random.nextBoolean()) {
+                if (states[i] == GumballState.NO_QUARTER) states[i] = GumballState.HAS_QUARTER;
+            } else if (states[i] == GumballState.HAS_QUARTER) {
+                counts[i]--;
+                states[i] = counts[i] > 0 ? GumballState.NO_QUARTER : GumballState.SOLD_OUT;
+            }
+        }
+    }
+
+    private static String fork(Path dir, int machines, int changes, long checkpointMillis, long seed)
+            throws IOException, InterruptedException {
+        List<String> command = new ArrayList<>();
+        command.add(Paths.get(System.getProperty("java.home"), "bin", "java").toString());
+        command.add("-cp");
+        command.add(System.getProperty("java.class.path"));
+        command.add(GumballRecoveryTestDrive.class.getName());
+        command.add("crash");
+        command.add(dir.toString());
+        command.add(String.valueOf(machines));
+        command.add(String.valueOf(changes));
+        command.add(String.valueOf(checkpointMillis));
+        command.add(String.valueOf(seed));
+        Process process = new ProcessBuilder(command).redirectError(ProcessBuilder.Redirect.INHERIT).start();
+        String line;
+        try (BufferedReader r = new BufferedReader(new InputStreamReader(process.getInputStream()))) {
+            line = r.readLine();
+        }
+        int exit = process.waitFor();
+        if (line == null) throw new IllegalStateException("server died before finishing (exit " + exit + ")");
+        return line + " (exit " + exit + ")";
+    }
+}
@@ -0,0 +1,66 @@
+package com.dsahub.patterns.proxy.remote;
+
+import java.rmi.Naming;
+import java.rmi.registry.LocateRegistry;
+import java.rmi.registry.Registry;
+import java.rmi.server.UnicastRemoteObject;
+import java.util.Arrays;
+
+/**
+ * Per-machine report latency over RMI: the three getters GumballMonitor used to call
+ * (getLocation, getCount, getState) against a single getSnapshot call.
+ * Usage: GumballReportBenchmark [reports=20000] [port=1099]
+ */
+public class GumballReportBenchmark {
+
+    private interface Report {
+        void run(GumballMachineRemote machine) throws Exception;
+    }
+
+    public static void main(String[] args) throws Exception {
+        int reports = args.length > 0 ? Integer.parseInt(args[0]) : 20000;
+        int port = args.length > 1 ? Integer.parseInt(args[1]) : 1099;
+
+        Registry registry = LocateRegistry.createRegistry(port);
+        GumballMachine machine = new GumballMachine("benchmark", 100);
+        registry.rebind("benchmark_gumball", machine);
+        GumballMachineRemote remote =
+                (GumballMachineRemote) Naming.lookup("rmi://localhost:" + port + "/benchmark_gumball");
+
+        Report getters = m -> {
+            m.getLocation();
+            m.getCount();
+            m.getState();
+        };
+        Report snapshot = GumballMachineRemote::getSnapshot;
+
+        try {
+            // warm up both paths (class loading, connections, JIT) before measuring
+            measure(getters, remote, reports / 10);
+            measure(snapshot, remote, reports / 10);
+            System.out.printf("%-10s %8s %10s %10s %10s%n", "report", "reports", "p50us", "p99us", "maxUs");
+            print("3 getters", measure(getters, remote, reports));
+            print("snapshot", measure(snapshot, remote, reports));
+        } finally {
+            UnicastRemoteObject.unexportObject(machine, true);
+            UnicastRemoteObject.unexportObject(registry, true);
+        }
+    }
+
+    private static long[] measure(Report report, GumballMachineRemote machine, int reports) throws Exception {
+        long[] nanos = new long[reports];
+        for (int i = 0; i < reports; i++) {
+            long start = System.nanoTime();
+            report.run(machine);
+            nanos[i] = System.nanoTime() - start;
+        }
+        Arrays.sort(nanos);
+        return nanos;
+    }
+
+    private static void print(String name, long[] sorted) {
+        int n = sorted.length;
+        System.out.printf("%-10s %8d %10.1f %10.1f %10.1f%n", name, n, sorted[n / 2] / 1e3,
+                sorted[(int) (n * 0.99)] / 1e3, sorted[n - 1] / 1e3);
+    }
+}
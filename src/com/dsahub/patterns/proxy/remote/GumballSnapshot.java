@@ -0,0 +1,66 @@
+package com.dsahub.patterns.proxy.remote;
+
+import java.io.Serializable;
+
+/**
+ * Everything a monitor reports about one machine, read atomically and returned in one remote call.
+ * Epoch and version place the snapshot among the machine's GumballDeltas, so a view can seed from it and
+ * still tell whether a delta it already holds is newer.
+ */
+public final class GumballSnapshot implements Serializable {
+    private static final long serialVersionUID = 2L;
+
+    private final String location;
+    private final int count;
+    private final String state;
+    private final long epoch;
+    private final long version;
+    private final long takenAtMillis;
+
+    public GumballSnapshot(String location, int count, String state, long epoch, long version, long takenAtMillis) {
+        this.location = location;
+        this.count = count;
+        this.state = state;
+        this.epoch = epoch;
+        this.version = version;
+        this.takenAtMillis = takenAtMillis;
+    }
+
+    public String getLocation() {
+        return location;
+    }
+
+    public int getCount() {
+        return count;
+    }
+
+    public String getState() {
+        return state;
+    }
+
+    // Incarnation of the machine; see GumballDelta.getEpoch()
+    public long getEpoch() {
+        return epoch;
+    }
+
+    public long getVersion() {
+        return version;
+    }
+
+    // Machine clock (System.currentTimeMillis) when the snapshot was taken
+    public long getTakenAtMillis() {
+        return takenAtMillis;
+    }
+
+    @Override
+    public String toString() {
+        return "GumballSnapshot{" +
+                "location='" + location + '\'' +
+                ", count=" + count +
+                ", state='" + state + '\'' +
+                ", epoch=" + epoch +
+                ", version=" + version +
+                ", takenAtMillis=" + takenAtMillis +
+                '}';
+    }
+}
@@ -0,0 +1,20 @@
+package com.dsahub.patterns.proxy.remote;
+
+/**
+ * States of the remote gumball machine. The display names are what GumballMachineRemote.getState() reports.
+ */
+public enum GumballState {
+    NO_QUARTER("NoQuarterState"),
+    HAS_QUARTER("HasQuarterState"),
+    SOLD_OUT("SoldOutState");
+
+    private final String displayName;
+
+    GumballState(String displayName) {
+        this.displayName = displayName;
+    }
+
+    public String getDisplayName() {
+        return displayName;
+    }
+}
@@ -0,0 +1,604 @@
+package com.dsahub.patterns.proxy.remote;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.ClosedByInterruptException;
+import java.nio.channels.ClosedChannelException;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Keeps the inventory and state of GumballMachines across server restarts. Every change is appended to a journal
+ * as the machine's whole GumballCore word; a checkpoint starts a new journal and writes every machine's word to a
+ * snapshot through a memory mapping, so a restart maps one file and replays only the changes since.
+ * <pre>
+ *   gumball.snapshot   int magic | int machines | long generation | machines x (long word | short length | location)
+ *   gumball-N.journal  byte REGISTER | int slot | long word | short length | location
+ *                      byte UPDATE   | int slot | long word
+ * </pre>
+ * Replay keeps the word with the newest version per machine, so records written out of order by racing threads,
+ * or already covered by the snapshot, do no harm. Journal writes reach the OS but are not forced: a crashed
+ * server loses nothing, a crashed host may lose the changes since the last checkpoint, which is forced. A snapshot
+ * is renamed into place only once complete, and a torn record at the end of a journal is cut off.
+ * <p>
+ * Appends are group-committed: a machine buffers its record and waits until it is written, and whichever caller
+ * gets to the journal first writes everything buffered so far in one call, so concurrent sales share a write
+ * instead of queueing for one each. A write cut short by an interrupt reopens the journal and writes the batch
+ * again; any other failure is counted, reported on System.err and followed by a checkpoint, which saves what the
+ * journal missed.
+ */
+public class GumballStore implements Closeable {
+
+    public static final long DEFAULT_CHECKPOINT_SECONDS = 60;
+    // locations are stored with an unsigned short length
+    public static final int MAX_LOCATION_BYTES = 0xFFFF;
+
+    private static final int MAGIC = 0x47424d53; // "GBMS"
+    private static final byte REGISTER = 1;
+    private static final byte UPDATE = 2;
+    private static final int UPDATE_SIZE = 1 + 4 + 8;
+    private static final int SNAPSHOT_HEADER = 4 + 4 + 8;
+    private static final String SNAPSHOT = "gumball.snapshot";
+    // each holds at least the largest REGISTER record
+    private static final int JOURNAL_BUFFER = 1 << 17;
+    private static final int REPLAY_CHUNK = 1 << 20;
+
+    private final Path dir;
+    private final GumballTelemetry telemetry;
+    private final ScheduledExecutorService checkpointer;
+    private final Object checkpointLock = new Object();
+
+    // guarded by this
+    private final Map<String, Integer> slots = new HashMap<>();
+    private final List<String> locations = new ArrayList<>();
+    // the last known word of every slot; live machines hold their own
+    private long[] words = new long[1024];
+    private GumballMachine[] machines = new GumballMachine[1024];
+
+    // records not written yet, and how many were ever buffered; guarded by appendLock
+    private final Object appendLock = new Object();
+    private ByteBuffer filling = ByteBuffer.allocate(JOURNAL_BUFFER);
+    private long appended;
+
+    // guarded by writeLock
+    private final ReentrantLock writeLock = new ReentrantLock();
+    private ByteBuffer draining = ByteBuffer.allocate(JOURNAL_BUFFER);
+    private long generation;
+    private FileChannel journal;
+    // bytes of whole batches in the current journal; a failed write is cut back to here
+    private long journalBytes;
+    private boolean failing;
+    private boolean closed;
+
+    // records buffered so far that are written (or given up on)
+    private volatile long written;
+    private final long recoveryNanos;
+    private long replayedRecords;
+    private volatile long failedAppends;
+    private volatile IOException lastFailure;
+    private volatile long checkpoints;
+
+    /**
+     * Recovers whatever dir holds, then checkpoints every DEFAULT_CHECKPOINT_SECONDS.
+     */
+    public GumballStore(Path dir) throws IOException {
+        this(dir, DEFAULT_CHECKPOINT_SECONDS, TimeUnit.SECONDS);
+    }
+
+    /**
+     * Recovers whatever dir holds, then checkpoints every period (never if period is 0).
+     */
+    public GumballStore(Path dir, long checkpointPeriod, TimeUnit unit) throws IOException {
+        this(dir, checkpointPeriod, unit, GumballTelemetry.shared());
+    }
+
+    public GumballStore(Path dir, long checkpointPeriod, TimeUnit unit, GumballTelemetry telemetry)
+            throws IOException {
+        this.dir = dir;
+        this.telemetry = telemetry;
+        long start = System.nanoTime();
+        recover();
+        this.recoveryNanos = System.nanoTime() - start;
+        if (checkpointPeriod > 0) {
+            this.checkpointer = Executors.newSingleThreadScheduledExecutor(r -> {
+                Thread t = new Thread(r, "GumballStore");
+                t.setDaemon(true);
+                return t;
+            });
+            this.checkpointer.scheduleWithFixedDelay(this::checkpointInBackground, checkpointPeriod,
+                    checkpointPeriod, unit);
+        } else {
+            this.checkpointer = null;
+        }
+    }
+
+    /**
+     * The machine at this location as it was when the store last saw it, or a new one with initialCount gumballs.
+     * Asking again for the same location returns the same machine.
+     */
+    public synchronized GumballMachine machine(String location, int initialCount) throws IOException {
+        Integer slot = slots.get(location);
+        if (slot == null) {
+            byte[] name = location.getBytes(StandardCharsets.UTF_8);
+            if (name.length > MAX_LOCATION_BYTES) {
+                throw new IllegalArgumentException("location longer than " + MAX_LOCATION_BYTES + " bytes");
+            }
+            slot = locations.size();
+            long word = new GumballCore(initialCount).word();
+            writeThrough(enqueue(REGISTER, slot, word, name));
+            add(location, word);
+        }
+        if (machines[slot] == null) {
+            machines[slot] = new GumballMachine(location, GumballCore.restore(words[slot]), telemetry, this, slot);
+        }
+        return machines[slot];
+    }
+
+    /**
+     * What the store knows about a location without bringing its machine up, or null.
+     */
+    public synchronized GumballSnapshot getSnapshot(String location) {
+        Integer slot = slots.get(location);
+        if (slot == null) return null;
+        GumballMachine machine = machines[slot];
+        long word = machine != null ? machine.word() : words[slot];
+        // a machine that is not up has no incarnation yet
+        return new GumballSnapshot(location, GumballCore.count(word), GumballCore.state(word).getDisplayName(),
+                machine != null ? machine.epoch() : 0, GumballCore.version(word), System.currentTimeMillis());
+    }
+
+    public synchronized List<String> getLocations() {
+        return Collections.unmodifiableList(new ArrayList<>(locations));
+    }
+
+    /**
+     * Called by a machine after every change; returns once the record has reached the OS.
+     */
+    void append(int slot, long word) {
+        writeThrough(enqueue(UPDATE, slot, word, null));
+    }
+
+    /**
+     * Writes a snapshot of every machine and drops the journal it makes redundant.
+     */
+    public void checkpoint() throws IOException {
+        synchronized (checkpointLock) {
+            long gen;
+            writeLock.lock();
+            try {
+                // changes from here on go to the new journal; any the capture below already has replay as no-ops
+                drain();
+                gen = generation + 1;
+                FileChannel next = openJournal(gen);
+                if (journal != null) {
+                    journal.close();
+                }
+                journal = next;
+                journalBytes = 0;
+                generation = gen;
+            } finally {
+                writeLock.unlock();
+            }
+            long[] captured;
+            String[] names;
+            synchronized (this) {
+                int n = locations.size();
+                captured = new long[n];
+                for (int i = 0; i < n; i++) {
+                    captured[i] = machines[i] != null ? machines[i].word() : words[i];
+                }
+                names = locations.toArray(new String[0]);
+            }
+            writeSnapshot(gen, captured, names);
+            deleteJournalsBefore(gen);
+            checkpoints++;
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        if (checkpointer != null) {
+            // lets a running checkpoint finish; interrupting it would close its channels halfway
+            checkpointer.shutdown();
+            try {
+                checkpointer.awaitTermination(Long.MAX_VALUE, TimeUnit.NANOSECONDS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new InterruptedIOException("interrupted waiting for a checkpoint");
+            }
+        }
+        // a clean shutdown leaves nothing to replay
+        checkpoint();
+        writeLock.lock();
+        try {
+            closed = true;
+            journal.close();
+        } finally {
+            writeLock.unlock();
+        }
+    }
+
+    public synchronized int getMachines() {
+        return locations.size();
+    }
+
+    public long getRecoveryNanos() {
+        return recoveryNanos;
+    }
+
+    // journal records applied during recovery
+    public long getReplayedRecords() {
+        return replayedRecords;
+    }
+
+    // records that never made it into a journal; the checkpoint after each failure saves their changes
+    public long getFailedAppends() {
+        return failedAppends;
+    }
+
+    // the last journal write that failed, or null
+    public IOException getLastFailure() {
+        return lastFailure;
+    }
+
+    public long getCheckpoints() {
+        return checkpoints;
+    }
+
+    // --- journal ---
+
+    private long enqueue(byte type, int slot, long word, byte[] name) {
+        int size = name == null ? UPDATE_SIZE : UPDATE_SIZE + 2 + name.length;
+        while (true) {
+            long full;
+            synchronized (appendLock) {
+                if (filling.remaining() >= size) {
+                    filling.put(type).putInt(slot).putLong(word);
+                    if (name != null) {
+                        filling.putShort((short) name.length).put(name);
+                    }
+                    return ++appended;
+                }
+                full = appended;
+            }
+            // no room: write out what is there, then try again
+            writeThrough(full);
+        }
+    }
+
+    /**
+     * Returns once record number seq is written. Callers that find the journal busy wait for it, and usually find
+     * their record in the batch that was just written.
+     */
+    private void writeThrough(long seq) {
+        if (written >= seq) return;
+        writeLock.lock();
+        try {
+            if (written < seq) {
+                drain();
+            }
+        } finally {
+            writeLock.unlock();
+        }
+    }
+
+    // holding writeLock: writes every record buffered so far
+    private void drain() {
+        long upTo;
+        synchronized (appendLock) {
+            ByteBuffer batch = filling;
+            filling = draining;
+            draining = batch;
+            upTo = appended;
+        }
+        draining.flip();
+        if (draining.hasRemaining()) {
+            write(draining, upTo - written);
+        }
+        draining.clear();
+        written = upTo;
+    }
+
+    // holding writeLock
+    private void write(ByteBuffer batch, long records) {
+        boolean interrupted = false;
+        try {
+            while (true) {
+                try {
+                    if (closed) throw new ClosedChannelException();
+                    if (!journal.isOpen()) {
+                        reopenJournal();
+                    }
+                    while (batch.hasRemaining()) {
+                        journal.write(batch);
+                    }
+                    journalBytes += batch.limit();
+                    if (failing) {
+                        failing = false;
+                        System.err.println("GumballStore journal writes resumed");
+                    }
+                    return;
+                } catch (ClosedByInterruptException e) {
+                    // the interrupt was meant for the caller, not the journal: write the whole batch again
+                    interrupted |= Thread.interrupted();
+                    batch.rewind();
+                } catch (IOException e) {
+                    failed(e, records);
+                    return;
+                }
+            }
+        } finally {
+            if (interrupted) {
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+
+    // holding writeLock
+    private void reopenJournal() throws IOException {
+        FileChannel channel = FileChannel.open(journalPath(generation), StandardOpenOption.CREATE,
+                StandardOpenOption.WRITE);
+        try {
+            // cut off whatever part of a batch got out before the channel closed
+            channel.truncate(journalBytes);
+            channel.position(journalBytes);
+        } catch (IOException e) {
+            channel.close();
+            throw e;
+        }
+        journal = channel;
+    }
+
+    // holding writeLock
+    private void failed(IOException e, long records) {
+        failedAppends += records;
+        lastFailure = e;
+        if (!failing) {
+            failing = true;
+            System.err.println("GumballStore journal write failed, changes are saved by checkpoints only: " + e);
+        }
+        try {
+            // the next batch starts from the last whole one
+            journal.close();
+        } catch (IOException ignored) {
+            // it is being replaced anyway
+        }
+        if (checkpointer != null && !closed) {
+            try {
+                checkpointer.execute(this::checkpointInBackground);
+            } catch (RejectedExecutionException ignored) {
+                // shutting down; close() checkpoints
+            }
+        }
+    }
+
+    private void checkpointInBackground() {
+        try {
+            checkpoint();
+        } catch (IOException e) {
+            // the journal still has everything; the next checkpoint tries again
+            System.err.println("GumballStore checkpoint failed: " + e);
+        }
+    }
+
+    // --- recovery ---
+
+    private void recover() throws IOException {
+        Files.createDirectories(dir);
+        Path snapshot = dir.resolve(SNAPSHOT);
+        if (Files.exists(snapshot)) {
+            loadSnapshot(snapshot);
+        }
+        // a checkpoint that died before its snapshot was renamed leaves the next journal behind as well
+        long[] gens = journalGenerations();
+        long last = generation;
+        for (long gen : gens) {
+            if (gen < generation) continue;
+            replay(journalPath(gen));
+            last = gen;
+        }
+        deleteJournalsBefore(generation);
+        generation = last;
+        journal = openJournal(generation);
+        journalBytes = journal.size();
+    }
+
+    private void loadSnapshot(Path path) throws IOException {
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            MappedByteBuffer map = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+            if (map.remaining() < SNAPSHOT_HEADER || map.getInt() != MAGIC) {
+                throw new IOException("not a gumball snapshot: " + path);
+            }
+            int n = map.getInt();
+            generation = map.getLong();
+            try {
+                for (int i = 0; i < n; i++) {
+                    long word = map.getLong();
+                    String location = getString(map);
+                    if (!GumballCore.isValid(word)) throw new IOException("corrupt word for " + location);
+                    add(location, word);
+                }
+            } catch (BufferUnderflowException e) {
+                throw new IOException("truncated gumball snapshot: " + path, e);
+            }
+        }
+    }
+
+    /**
+     * Applies every complete record and cuts the journal off after the last one. The journal is read a chunk at
+     * a time, so its size does not matter.
+     */
+    private void replay(Path path) throws IOException {
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+            ByteBuffer in = ByteBuffer.allocate(REPLAY_CHUNK);
+            // file offset of in's first byte, and the end of the last good record
+            long base = 0;
+            long valid = 0;
+            boolean end = false;
+            while (!end) {
+                end = channel.read(in) < 0;
+                in.flip();
+                while (in.hasRemaining()) {
+                    int start = in.position();
+                    int applied;
+                    try {
+                        applied = apply(in);
+                    } catch (BufferUnderflowException e) {
+                        // the rest of the record is in the next chunk, or it is torn
+                        in.position(start);
+                        break;
+                    }
+                    if (applied < 0) {
+                        end = true;
+                        break;
+                    }
+                    valid = base + in.position();
+                    replayedRecords++;
+                }
+                base += in.position();
+                in.compact();
+            }
+            if (valid < channel.size()) {
+                channel.truncate(valid);
+            }
+        }
+    }
+
+    // 1 if the record at in's position was applied, -1 if it is corrupt
+    private int apply(ByteBuffer in) {
+        byte type = in.get();
+        int slot = in.getInt();
+        long word = in.getLong();
+        if (type == REGISTER) {
+            String location = getString(in);
+            if (!GumballCore.isValid(word)) return -1;
+            Integer known = slots.get(location);
+            if (known == null && slot == locations.size()) {
+                add(location, word);
+            } else if (known == null || known != slot) {
+                return -1;
+            }
+        } else if (type == UPDATE && slot >= 0 && slot < locations.size() && GumballCore.isValid(word)) {
+            if (GumballCore.isNewerVersion(GumballCore.version(word), GumballCore.version(words[slot]))) {
+                words[slot] = word;
+            }
+        } else {
+            return -1;
+        }
+        return 1;
+    }
+
+    private void add(String location, long word) {
+        int slot = locations.size();
+        if (slot == words.length) {
+            words = Arrays.copyOf(words, slot * 2);
+            machines = Arrays.copyOf(machines, slot * 2);
+        }
+        words[slot] = word;
+        slots.put(location, slot);
+        locations.add(location);
+    }
+
+    // --- files ---
+
+    private void writeSnapshot(long gen, long[] captured, String[] names) throws IOException {
+        byte[][] encoded = new byte[names.length][];
+        long size = SNAPSHOT_HEADER;
+        for (int i = 0; i < names.length; i++) {
+            encoded[i] = names[i].getBytes(StandardCharsets.UTF_8);
+            size += 8 + 2 + encoded[i].length;
+        }
+        Path tmp = dir.resolve(SNAPSHOT + ".tmp");
+        try (FileChannel channel = FileChannel.open(tmp, StandardOpenOption.CREATE, StandardOpenOption.READ,
+                StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+            MappedByteBuffer map = channel.map(FileChannel.MapMode.READ_WRITE, 0, size);
+            map.putInt(MAGIC).putInt(names.length).putLong(gen);
+            for (int i = 0; i < names.length; i++) {
+                map.putLong(captured[i]);
+                putString(map, encoded[i]);
+            }
+            map.force();
+        }
+        Files.move(tmp, dir.resolve(SNAPSHOT), StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+        forceDirectory();
+    }
+
+    // makes the rename itself durable, before the journals it replaces are deleted
+    private void forceDirectory() throws IOException {
+        FileChannel channel;
+        try {
+            channel = FileChannel.open(dir, StandardOpenOption.READ);
+        } catch (IOException e) {
+            // not every platform opens a directory; there the rename is as durable as the OS makes it
+            return;
+        }
+        try (channel) {
+            channel.force(true);
+        }
+    }
+
+    private static void putString(ByteBuffer out, byte[] utf8) {
+        out.putShort((short) utf8.length).put(utf8);
+    }
+
+    private static String getString(ByteBuffer in) {
+        byte[] bytes = new byte[in.getShort() & 0xFFFF];
+        in.get(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    private Path journalPath(long gen) {
+        return dir.resolve("gumball-" + gen + ".journal");
+    }
+
+    private FileChannel openJournal(long gen) throws IOException {
+        return FileChannel.open(journalPath(gen), StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                StandardOpenOption.APPEND);
+    }
+
+    private long[] journalGenerations() throws IOException {
+        List<Long> gens = new ArrayList<>();
+        try (DirectoryStream<Path> files = Files.newDirectoryStream(dir, "gumball-*.journal")) {
+            for (Path file : files) {
+                String name = file.getFileName().toString();
+                try {
+                    gens.add(Long.parseLong(name.substring("gumball-".length(), name.length() - ".journal".length())));
+                } catch (NumberFormatException e) {
+                    // not one of ours
+                }
+            }
+        }
+        long[] sorted = new long[gens.size()];
+        for (int i = 0; i < sorted.length; i++) {
+            sorted[i] = gens.get(i);
+        }
+        Arrays.sort(sorted);
+        return sorted;
+    }
+
+    private void deleteJournalsBefore(long gen) throws IOException {
+        for (long old : journalGenerations()) {
+            if (old < gen) Files.deleteIfExists(journalPath(old));
+        }
+    }
+}
@@ -0,0 +1,212 @@
+package com.dsahub.patterns.proxy.remote;
+
+import java.rmi.RemoteException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Pushes machine changes to subscribed GumballListeners. Machines publish a delta on every change; deltas are
+ * held for one window, coalesced to the latest per machine, and sent as one batch per listener, so monitoring
+ * traffic follows the rate of sales rather than the rate of polling.
+ * Each listener is sent to on its own virtual thread, one batch at a time: deltas that come due while its last
+ * batch is still in flight wait and are coalesced into the next one, so a slow monitor only delays itself.
+ * A send that fails or takes longer than the send timeout is retried with the next batch (its deltas are kept),
+ * and a listener is dropped only after MAX_FAILURES such sends in a row.
+ * One flush thread per instance; machines in a JVM normally share shared().
+ */
+public class GumballTelemetry {
+
+    public static final int MAX_FAILURES = 3;
+
+    private static class Holder {
+        private static final GumballTelemetry SHARED =
+                new GumballTelemetry(100, TimeUnit.MILLISECONDS, 5, TimeUnit.SECONDS);
+    }
+
+    /**
+     * Send state of one listener. The backlog is filled on the flush thread and handed to a sender thread
+     * whole; guarded by this.
+     */
+    private final class Subscriber {
+        final GumballListener listener;
+        Map<GumballMachine, GumballDelta> backlog = new HashMap<>();
+        Future<?> inFlight;
+        long sentAtNanos;
+        boolean overdue;
+        int failures;
+
+        Subscriber(GumballListener listener) {
+            this.listener = listener;
+        }
+
+        synchronized void add(GumballMachine machine, GumballDelta delta) {
+            backlog.merge(machine, delta, GumballTelemetry::newest);
+        }
+
+        synchronized void flush(long now) {
+            if (inFlight != null) {
+                if (!overdue && now - sentAtNanos > sendTimeoutNanos) {
+                    // on a virtual thread this closes the call's socket, so the send fails and frees the listener
+                    overdue = true;
+                    inFlight.cancel(true);
+                    failed();
+                }
+                return;
+            }
+            if (backlog.isEmpty()) return;
+            Map<GumballMachine, GumballDelta> batch = backlog;
+            backlog = new HashMap<>();
+            sentAtNanos = now;
+            overdue = false;
+            inFlight = senders.submit(() -> send(batch));
+        }
+
+        synchronized boolean isIdle() {
+            return inFlight == null && backlog.isEmpty() && failures == 0;
+        }
+
+        private void send(Map<GumballMachine, GumballDelta> batch) {
+            try {
+                listener.inventoryChanged(new ArrayList<>(batch.values()));
+                batchesSent.increment();
+                deltasSent.add(batch.size());
+                synchronized (this) {
+                    inFlight = null;
+                    failures = 0;
+                }
+            } catch (RemoteException | RuntimeException e) {
+                synchronized (this) {
+                    inFlight = null;
+                    // keep the deltas for the next attempt, under anything newer that came in meanwhile
+                    for (Map.Entry<GumballMachine, GumballDelta> d : batch.entrySet()) {
+                        backlog.merge(d.getKey(), d.getValue(), GumballTelemetry::newest);
+                    }
+                    if (!overdue) {
+                        failed();
+                    }
+                }
+            }
+        }
+
+        // holding this
+        private void failed() {
+            if (++failures >= MAX_FAILURES) {
+                // the monitor is gone or broken; stop paying for it
+                drop(listener);
+            }
+        }
+    }
+
+    private final Map<GumballMachine, CopyOnWriteArrayList<GumballListener>> subscriptions = new ConcurrentHashMap<>();
+    private final Map<GumballMachine, GumballDelta> pending = new ConcurrentHashMap<>();
+    // touched by the flush thread, and by senders dropping their listener
+    private final Map<GumballListener, Subscriber> subscribers = new ConcurrentHashMap<>();
+    private final ScheduledExecutorService flusher;
+    private final ExecutorService senders = Executors.newVirtualThreadPerTaskExecutor();
+    private final long sendTimeoutNanos;
+    private final LongAdder batchesSent = new LongAdder();
+    private final LongAdder deltasSent = new LongAdder();
+    private final LongAdder listenersDropped = new LongAdder();
+
+    public GumballTelemetry(long window, TimeUnit unit) {
+        this(window, unit, 5, TimeUnit.SECONDS);
+    }
+
+    /**
+     * @param sendTimeout how long one batch may take to reach a listener before the send counts as failed
+     */
+    public GumballTelemetry(long window, TimeUnit unit, long sendTimeout, TimeUnit sendTimeoutUnit) {
+        this.sendTimeoutNanos = sendTimeoutUnit.toNanos(sendTimeout);
+        this.flusher = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread t = new Thread(r, "GumballTelemetry");
+            t.setDaemon(true);
+            return t;
+        });
+        this.flusher.scheduleWithFixedDelay(this::flush, window, window, unit);
+    }
+
+    public static GumballTelemetry shared() {
+        return Holder.SHARED;
+    }
+
+    void subscribe(GumballMachine machine, GumballListener listener) {
+        subscriptions.computeIfAbsent(machine, m -> new CopyOnWriteArrayList<>()).addIfAbsent(listener);
+    }
+
+    void unsubscribe(GumballMachine machine, GumballListener listener) {
+        List<GumballListener> listeners = subscriptions.get(machine);
+        if (listeners != null) {
+            listeners.remove(listener);
+        }
+    }
+
+    /**
+     * Called by the machine after every change. Threads may publish out of version order.
+     */
+    void publish(GumballMachine machine, GumballDelta delta) {
+        List<GumballListener> listeners = subscriptions.get(machine);
+        if (listeners == null || listeners.isEmpty()) return;
+        pending.merge(machine, delta, GumballTelemetry::newest);
+    }
+
+    public long getBatchesSent() {
+        return batchesSent.sum();
+    }
+
+    public long getDeltasSent() {
+        return deltasSent.sum();
+    }
+
+    // Listeners unsubscribed from every machine after MAX_FAILURES failed sends in a row
+    public long getListenersDropped() {
+        return listenersDropped.sum();
+    }
+
+    public void shutdown() {
+        flusher.shutdownNow();
+        senders.shutdownNow();
+    }
+
+    private static GumballDelta newest(GumballDelta a, GumballDelta b) {
+        return b.isNewerThan(a) ? b.coalesce(a) : a.coalesce(b);
+    }
+
+    private void flush() {
+        for (GumballMachine machine : pending.keySet()) {
+            GumballDelta delta = pending.remove(machine);
+            List<GumballListener> listeners = subscriptions.get(machine);
+            if (delta == null || listeners == null) continue;
+            for (GumballListener listener : listeners) {
+                subscribers.computeIfAbsent(listener, Subscriber::new).add(machine, delta);
+            }
+        }
+        long now = System.nanoTime();
+        for (Iterator<Subscriber> it = subscribers.values().iterator(); it.hasNext(); ) {
+            Subscriber subscriber = it.next();
+            subscriber.flush(now);
+            if (subscriber.isIdle()) {
+                // nothing owed to it; a later delta creates it again
+                it.remove();
+            }
+        }
+    }
+
+    private void drop(GumballListener listener) {
+        for (List<GumballListener> listeners : subscriptions.values()) {
+            listeners.remove(listener);
+        }
+        subscribers.remove(listener);
+        listenersDropped.increment();
+    }
+}
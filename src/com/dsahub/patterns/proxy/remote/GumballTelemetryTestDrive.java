@@ -0,0 +1,75 @@
+package com.dsahub.patterns.proxy.remote;
+
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.rmi.Naming;
+import java.rmi.registry.LocateRegistry;
+import java.rmi.registry.Registry;
+import java.rmi.server.UnicastRemoteObject;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Push telemetry demo: a GumballFleetView watches a fleet of machines while customers buy gumballs at random.
+ * Prints how many remote calls the pushed updates took, how many a once-a-second poll of every machine would
+ * have taken, and whether the view's inventory total matches the machines.
+ * Usage: GumballTelemetryTestDrive [machines=200] [seconds=10] [salesPerSecond=50] [port=1099]
+ */
+public class GumballTelemetryTestDrive {
+    public static void main(String[] args) throws Exception {
+        int machines = args.length > 0 ? Integer.parseInt(args[0]) : 200;
+        int seconds = args.length > 1 ? Integer.parseInt(args[1]) : 10;
+        int salesPerSecond = args.length > 2 ? Integer.parseInt(args[2]) : 50;
+        int port = args.length > 3 ? Integer.parseInt(args[3]) : 1099;
+
+        Registry registry = LocateRegistry.createRegistry(port);
+        List<GumballMachine> fleet = new ArrayList<>();
+        for (int i = 0; i < machines; i++) {
+            GumballMachine machine = new GumballMachine("machine-" + i, 1000);
+            registry.rebind("telemetry_gumball_" + i, machine);
+            fleet.add(machine);
+        }
+
+        GumballFleetView view = new GumballFleetView();
+        for (int i = 0; i < machines; i++) {
+            view.watch((GumballMachineRemote) Naming.lookup("rmi://localhost:" + port + "/telemetry_gumball_" + i));
+        }
+
+        // machines narrate every sale; keep the console for the summary
+        PrintStream console = System.out;
+        System.setOut(new PrintStream(OutputStream.nullOutputStream()));
+        long sales = 0;
+        long end = System.nanoTime() + TimeUnit.SECONDS.toNanos(seconds);
+        while (System.nanoTime() < end) {
+            GumballMachine machine = fleet.get(ThreadLocalRandom.current().nextInt(machines));
+            machine.insertQuarter();
+            machine.turnCrank();
+            sales++;
+            Thread.sleep(1000 / Math.max(1, salesPerSecond));
+        }
+        // let the last window flush
+        Thread.sleep(500);
+        System.setOut(console);
+
+        long actual = 0;
+        for (GumballMachine machine : fleet) {
+            actual += machine.getCount();
+        }
+        GumballTelemetry telemetry = GumballTelemetry.shared();
+        System.out.printf("sales=%d machine changes=%d%n", sales, 2 * sales);
+        System.out.printf("pushed: %d batches (remote calls), %d deltas covering %d changes%n",
+                telemetry.getBatchesSent(), view.getDeltasReceived(), view.getChangesReceived());
+        System.out.printf("polling every machine once a second would take %d remote calls%n",
+                (long) machines * seconds);
+        System.out.printf("view total=%d actual total=%d %s%n", view.getTotalCount(), actual,
+                view.getTotalCount() == actual ? "OK" : "MISMATCH");
+
+        for (GumballMachine machine : fleet) {
+            UnicastRemoteObject.unexportObject(machine, true);
+        }
+        UnicastRemoteObject.unexportObject(view, true);
+        UnicastRemoteObject.unexportObject(registry, true);
+    }
+}
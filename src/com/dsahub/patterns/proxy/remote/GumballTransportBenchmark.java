@@ -0,0 +1,126 @@
+package com.dsahub.patterns.proxy.remote;
+
+import java.rmi.Naming;
+import java.rmi.registry.LocateRegistry;
+import java.rmi.registry.Registry;
+import java.rmi.server.UnicastRemoteObject;
+import java.util.Arrays;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Semaphore;
+
+/**
+ * getSnapshot calls per second and latency over the RMI stub against the NIO transport, for the same machine:
+ * one caller waiting for each answer, several callers sharing the transport, and (NIO only) one caller keeping
+ * a window of requests in flight on its single connection.
+ * Usage: GumballTransportBenchmark [calls=20000] [port=1099] [threads=4] [window=32]
+ */
+public class GumballTransportBenchmark {
+
+    private static final int NIO_PORT_OFFSET = 1;
+
+    public static void main(String[] args) throws Exception {
+        int calls = args.length > 0 ? Integer.parseInt(args[0]) : 20000;
+        int port = args.length > 1 ? Integer.parseInt(args[1]) : 1099;
+        int threads = args.length > 2 ? Integer.parseInt(args[2]) : 4;
+        int window = args.length > 3 ? Integer.parseInt(args[3]) : 32;
+
+        Registry registry = LocateRegistry.createRegistry(port);
+        GumballMachine machine = new GumballMachine("benchmark", 100);
+        registry.rebind("benchmark_gumball", machine);
+        GumballNioServer server = new GumballNioServer(port + NIO_PORT_OFFSET);
+        server.bind("benchmark_gumball", machine);
+
+        GumballMachineRemote rmi =
+                (GumballMachineRemote) Naming.lookup("rmi://localhost:" + port + "/benchmark_gumball");
+        GumballNioClient client = new GumballNioClient(server.getPort());
+        GumballNioStub nio = client.lookup("benchmark_gumball");
+
+        try {
+            // warm up every path (class loading, connections, JIT) before measuring
+            blocking(rmi, calls / 10, threads);
+            blocking(nio, calls / 10, threads);
+            pipelined(nio, calls / 10, window);
+            System.out.printf("%-22s %8s %10s %10s %10s%n", "transport", "calls", "calls/s", "p50us", "p99us");
+            print("rmi 1 thread", blocking(rmi, calls, 1));
+            print("nio 1 thread", blocking(nio, calls, 1));
+            print("rmi " + threads + " threads", blocking(rmi, calls, threads));
+            print("nio " + threads + " threads", blocking(nio, calls, threads));
+            print("nio pipelined x" + window, pipelined(nio, calls, window));
+        } finally {
+            client.close();
+            server.close();
+            UnicastRemoteObject.unexportObject(machine, true);
+            UnicastRemoteObject.unexportObject(registry, true);
+        }
+    }
+
+    private static final class Run {
+        final long[] nanos;
+        final long elapsedNanos;
+
+        Run(long[] nanos, long elapsedNanos) {
+            Arrays.sort(nanos);
+            this.nanos = nanos;
+            this.elapsedNanos = elapsedNanos;
+        }
+    }
+
+    /**
+     * Each thread makes its share of the calls one after the other.
+     */
+    private static Run blocking(GumballMachineRemote machine, int calls, int threads) throws Exception {
+        long[] nanos = new long[calls - calls % threads];
+        int each = nanos.length / threads;
+        Thread[] workers = new Thread[threads];
+        Exception[] failure = new Exception[1];
+        long start = System.nanoTime();
+        for (int t = 0; t < threads; t++) {
+            int from = t * each;
+            workers[t] = new Thread(() -> {
+                try {
+                    for (int i = from; i < from + each; i++) {
+                        long s = System.nanoTime();
+                        machine.getSnapshot();
+                        nanos[i] = System.nanoTime() - s;
+                    }
+                } catch (Exception e) {
+                    failure[0] = e;
+                }
+            });
+            workers[t].start();
+        }
+        for (Thread w : workers) {
+            w.join();
+        }
+        long elapsed = System.nanoTime() - start;
+        if (failure[0] != null) throw failure[0];
+        return new Run(nanos, elapsed);
+    }
+
+    /**
+     * One thread, up to window requests outstanding; latency is from send to answer.
+     */
+    private static Run pipelined(GumballNioStub machine, int calls, int window) throws Exception {
+        long[] nanos = new long[calls];
+        Semaphore slots = new Semaphore(window);
+        CompletableFuture<?>[] futures = new CompletableFuture<?>[calls];
+        long start = System.nanoTime();
+        for (int i = 0; i < calls; i++) {
+            slots.acquire();
+            int call = i;
+            long s = System.nanoTime();
+            futures[i] = machine.getSnapshotAsync().whenComplete((snapshot, e) -> {
+                nanos[call] = System.nanoTime() - s;
+                slots.release();
+            });
+        }
+        CompletableFuture.allOf(futures).join();
+        return new Run(nanos, System.nanoTime() - start);
+    }
+
+    private static void print(String name, Run run) {
+        int n = run.nanos.length;
+        System.out.printf("%-22s %8d %10.0f %10.1f %10.1f%n", name, n, n * 1e9 / run.elapsedNanos,
+                run.nanos[n / 2] / 1e3, run.nanos[(int) (n * 0.99)] / 1e3);
+    }
+}
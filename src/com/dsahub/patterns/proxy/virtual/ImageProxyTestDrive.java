@@ -1,5 +1,8 @@
 package com.dsahub.patterns.proxy.virtual;
 
+import com.dsahub.patterns.clock.Scheduler;
+import com.dsahub.patterns.clock.SystemScheduler;
+
 import javax.swing.*;
 import java.awt.*;
 import java.net.URL;
@@ -38,12 +41,19 @@ class ImageIconReal implements Icon {
 // VIRTUAL PROXY
 class ImageProxy implements Icon {
 
-    private ImageIconReal imageIcon;  // Real subject (lazy)
+    private volatile ImageIconReal imageIcon;  // Real subject (lazy)
     private URL imageURL;
+    private final Scheduler loader;
     private boolean retrieving = false;
 
     public ImageProxy(URL url) {
+        this(url, new SystemScheduler("ImageProxy"));
+    }
+
+    // The background load runs on the loader; a VirtualScheduler makes it run on demand in simulations
+    public ImageProxy(URL url, Scheduler loader) {
         this.imageURL = url;
+        this.loader = loader;
     }
 
     @Override
@@ -73,15 +83,15 @@ class ImageProxy implements Icon {
 
             if (!retrieving) {
                 retrieving = true;
-                // Background thread loads image lazily
-                new Thread(() -> {
+                // Loader thread loads image lazily
+                loader.execute(() -> {
                     try {
                         imageIcon = new ImageIconReal(imageURL);
                         c.repaint();
                     } catch (Exception e) {
                         e.printStackTrace();
                     }
-                }).start();
+                });
             }
         }
     }
@@ -0,0 +1,292 @@
+package com.dsahub.patterns.singleton;
+
+import com.dsahub.patterns.bench.BenchmarkReport;
+
+import java.io.BufferedReader;
+import java.io.InputStreamReader;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.CyclicBarrier;
+import java.util.function.Supplier;
+
+/**
+ * Measures getInstance() of every singleton variant, so the claims in their javadoc come with numbers:
+ * steady-state throughput at 1..N threads hammering the same instance, and cold-start latency of the very
+ * first call (class loading and construction included).
+ * Like JMH, each variant runs in its own JVM (so one variant's call-site profile cannot slow down another's),
+ * with warm-up iterations discarded; cold start gets a fresh JVM per sample. Results are printed and written
+ * as JSON.
+ *
+ * Usage: SingletonBenchmark [key=value ...]
+ *   variants=lazy,synchronised,doubleCheck,holder,eager,enum  threads=1,2,4,8  warmup=3  iterations=5
+ *   iterationMillis=1000  coldForks=5  out=singleton-benchmark.json
+ */
+public class SingletonBenchmark {
+
+    private static final int BATCH = 1024;
+
+    private static final List<String> VARIANTS =
+            Arrays.asList("lazy", "synchronised", "doubleCheck", "holder", "eager", "enum");
+
+    private static class Worker extends Thread {
+        private final Supplier<Object> variant;
+        private final CyclicBarrier barrier;
+        private volatile boolean stop;
+        private long ops;
+        // like JMH's Blackhole: two volatile reads per call that can never both match, so the JIT
+        // can neither drop the call nor hoist a constant result out of the loop
+        private volatile Object sink1 = new Object();
+        private volatile Object sink2 = new Object();
+        private Object escaped;
+
+        Worker(Supplier<Object> variant, CyclicBarrier barrier) {
+            this.variant = variant;
+            this.barrier = barrier;
+        }
+
+        @Override
+        public void run() {
+            try {
+                barrier.await();
+            } catch (Exception e) {
+                return;
+            }
+            long n = 0;
+            while (!stop) {
+                for (int i = 0; i < BATCH; i++) {
+                    Object o = variant.get();
+                    if (o == sink1 & o == sink2) {
+                        escaped = o;
+                    }
+                }
+                n += BATCH;
+            }
+            ops = n;
+        }
+    }
+
+    public static void main(String[] args) throws Exception {
+        Map<String, String> options = new LinkedHashMap<>();
+        options.put("variants", String.join(",", VARIANTS));
+        options.put("threads", defaultThreads());
+        options.put("warmup", "3");
+        options.put("iterations", "5");
+        options.put("iterationMillis", "1000");
+        options.put("coldForks", "5");
+        options.put("out", "singleton-benchmark.json");
+        options.put("mode", "main");
+        options.put("variant", "");
+        BenchmarkReport.parseOptions(options, args);
+
+        switch (options.get("mode")) {
+            case "steady":
+                runSteady(options);
+                return;
+            case "cold":
+                runCold(options.get("variant"));
+                return;
+            default:
+                break;
+        }
+
+        List<Map<String, Object>> results = new ArrayList<>();
+        for (String variant : options.get("variants").split(",")) {
+            variant = variant.trim();
+            if (!VARIANTS.contains(variant)) throw new IllegalArgumentException("unknown variant: " + variant);
+            for (String line : fork(options, "mode=steady", "variant=" + variant)) {
+                // steady <threads> <opsPerSecond mean> <min> <max>
+                String[] f = line.split(" ");
+                int threads = Integer.parseInt(f[1]);
+                double mean = Double.parseDouble(f[2]);
+                Map<String, Object> result = new LinkedHashMap<>();
+                result.put("variant", variant);
+                result.put("mode", "steady");
+                result.put("threads", threads);
+                result.put("opsPerSecond", mean);
+                result.put("opsPerSecondMin", Double.parseDouble(f[3]));
+                result.put("opsPerSecondMax", Double.parseDouble(f[4]));
+                result.put("nanosPerOp", threads * 1e9 / mean);
+                print(result);
+                results.add(result);
+            }
+            int forks = Integer.parseInt(options.get("coldForks"));
+            long[] cold = new long[forks];
+            for (int i = 0; i < forks; i++) {
+                // cold <nanos>
+                cold[i] = Long.parseLong(fork(options, "mode=cold", "variant=" + variant).get(0).split(" ")[1]);
+            }
+            if (forks > 0) {
+                Arrays.sort(cold);
+                Map<String, Object> result = new LinkedHashMap<>();
+                result.put("variant", variant);
+                result.put("mode", "cold");
+                result.put("forks", forks);
+                result.put("firstCallMicrosMedian", cold[forks / 2] / 1e3);
+                result.put("firstCallMicrosMin", cold[0] / 1e3);
+                result.put("firstCallMicrosMax", cold[forks - 1] / 1e3);
+                print(result);
+                results.add(result);
+            }
+        }
+        options.remove("mode");
+        options.remove("variant");
+        Path out = Paths.get(options.get("out"));
+        BenchmarkReport.writeJson(out, options, results);
+        System.out.println("Results written to " + out.toAbsolutePath());
+    }
+
+    private static String defaultThreads() {
+        int max = Runtime.getRuntime().availableProcessors();
+        StringBuilder sb = new StringBuilder("1");
+        for (int t = 2; t <= max; t *= 2) {
+            sb.append(',').append(t);
+        }
+        if (Integer.bitCount(max) != 1) {
+            sb.append(',').append(max);
+        }
+        return sb.toString();
+    }
+
+    private static void runSteady(Map<String, String> options) throws Exception {
+        Supplier<Object> variant = variant(options.get("variant"));
+        int warmup = Integer.parseInt(options.get("warmup"));
+        int iterations = Integer.parseInt(options.get("iterations"));
+        long millis = Long.parseLong(options.get("iterationMillis"));
+        // the steady state is after initialization
+        variant.get();
+        for (String t : options.get("threads").split(",")) {
+            int threads = Integer.parseInt(t.trim());
+            double sum = 0;
+            double min = Double.MAX_VALUE;
+            double max = 0;
+            for (int i = 0; i < warmup + iterations; i++) {
+                double opsPerSecond = iteration(variant, threads, millis);
+                if (i >= warmup) {
+                    sum += opsPerSecond;
+                    min = Math.min(min, opsPerSecond);
+                    max = Math.max(max, opsPerSecond);
+                }
+            }
+            System.out.println(String.format(Locale.ROOT, "steady %d %.1f %.1f %.1f", threads,
+                    sum / Math.max(1, iterations), iterations > 0 ? min : 0, max));
+        }
+    }
+
+    private static double iteration(Supplier<Object> variant, int threads, long millis) throws Exception {
+        CyclicBarrier barrier = new CyclicBarrier(threads + 1);
+        Worker[] workers = new Worker[threads];
+        for (int i = 0; i < threads; i++) {
+            workers[i] = new Worker(variant, barrier);
+            workers[i].start();
+        }
+        barrier.await();
+        long start = System.nanoTime();
+        Thread.sleep(millis);
+        for (Worker w : workers) {
+            w.stop = true;
+        }
+        long ops = 0;
+        for (Worker w : workers) {
+            w.join();
+            ops += w.ops;
+        }
+        long elapsed = System.nanoTime() - start;
+        return ops * 1e9 / elapsed;
+    }
+
+    private static Supplier<Object> variant(String name) {
+        switch (name) {
+            case "lazy":
+                return SimpleSingletonLazy::getInstance;
+            case "synchronised":
+                return SimpleSingletonSynchronised::getInstance;
+            case "doubleCheck":
+                return SimpleSingletonDoubleCheckLocking::getInstance;
+            case "holder":
+                return SimpleSingletonHolder::getInstance;
+            case "eager":
+                return SimpleSingletonEager::getInstance;
+            case "enum":
+                return () -> SingleTonEnum.INSTANCE;
+            default:
+                throw new IllegalArgumentException("unknown variant: " + name);
+        }
+    }
+
+    /**
+     * Direct calls rather than method references, which would load the class before the clock starts.
+     */
+    private static void runCold(String name) {
+        long start = System.nanoTime();
+        Object instance;
+        switch (name) {
+            case "lazy":
+                instance = SimpleSingletonLazy.getInstance();
+                break;
+            case "synchronised":
+                instance = SimpleSingletonSynchronised.getInstance();
+                break;
+            case "doubleCheck":
+                instance = SimpleSingletonDoubleCheckLocking.getInstance();
+                break;
+            case "holder":
+                instance = SimpleSingletonHolder.getInstance();
+                break;
+            case "eager":
+                instance = SimpleSingletonEager.getInstance();
+                break;
+            case "enum":
+                instance = SingleTonEnum.INSTANCE;
+                break;
+            default:
+                throw new IllegalArgumentException("unknown variant: " + name);
+        }
+        long nanos = System.nanoTime() - start;
+        if (instance == null) throw new IllegalStateException(name + " returned null");
+        System.out.println("cold " + nanos);
+    }
+
+    /**
+     * Runs this class in a fresh JVM and returns its result lines.
+     */
+    private static List<String> fork(Map<String, String> options, String... extra) throws Exception {
+        List<String> command = new ArrayList<>();
+        command.add(Paths.get(System.getProperty("java.home"), "bin", "java").toString());
+        command.add("-cp");
+        command.add(System.getProperty("java.class.path"));
+        command.add(SingletonBenchmark.class.getName());
+        for (String key : new String[]{"threads", "warmup", "iterations", "iterationMillis"}) {
+            command.add(key + "=" + options.get(key));
+        }
+        command.addAll(Arrays.asList(extra));
+        Process process = new ProcessBuilder(command).redirectError(ProcessBuilder.Redirect.INHERIT).start();
+        List<String> lines = new ArrayList<>();
+        try (BufferedReader r = new BufferedReader(new InputStreamReader(process.getInputStream()))) {
+            String line;
+            while ((line = r.readLine()) != null) {
+                lines.add(line);
+            }
+        }
+        int exit = process.waitFor();
+        if (exit != 0 || lines.isEmpty()) {
+            throw new IllegalStateException("forked run failed (exit " + exit + "): " + String.join(" ", extra));
+        }
+        return lines;
+    }
+
+    private static void print(Map<String, Object> result) {
+        StringBuilder sb = new StringBuilder();
+        for (Map.Entry<String, Object> e : result.entrySet()) {
+            Object v = e.getValue();
+            sb.append(e.getKey()).append('=')
+                    .append(v instanceof Double ? String.format(Locale.ROOT, "%.2f", v) : v).append("  ");
+        }
+        System.out.println(sb.toString().trim());
+    }
+}
@@ -0,0 +1,115 @@
+package com.dsahub.patterns.singleton;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ForkJoinPool;
+import java.util.function.Supplier;
+
+/**
+ * Lazy singletons that can be built ahead of time. Each one is registered with its factory and the entries it
+ * depends on; warmUp() then builds all of them in parallel on a fork-join pool, each as soon as its
+ * dependencies are done, so no request thread pays for construction after a deploy.
+ * Dependencies can only name entries registered earlier, so the graph cannot have cycles.
+ * An entry that was not warmed up is still built lazily (double-checked locking) on first get().
+ */
+public final class SingletonRegistry {
+
+    public static final class Entry<T> {
+        private final String name;
+        private final Supplier<T> factory;
+        private final Entry<?>[] dependencies;
+        private volatile T instance;
+        private volatile long initNanos = -1;
+        private volatile String initThread;
+
+        private Entry(String name, Supplier<T> factory, Entry<?>[] dependencies) {
+            this.name = name;
+            this.factory = factory;
+            this.dependencies = dependencies;
+        }
+
+        /**
+         * A single volatile read once the instance exists.
+         */
+        public T get() {
+            T i = instance;
+            return i != null ? i : initialize();
+        }
+
+        private synchronized T initialize() {
+            if (instance == null) {
+                for (Entry<?> dependency : dependencies) {
+                    dependency.get();
+                }
+                long start = System.nanoTime();
+                T created = factory.get();
+                if (created == null) throw new IllegalStateException(name + " factory returned null");
+                initNanos = System.nanoTime() - start;
+                initThread = Thread.currentThread().getName();
+                instance = created;
+            }
+            return instance;
+        }
+
+        public String getName() {
+            return name;
+        }
+
+        public boolean isInitialized() {
+            return instance != null;
+        }
+
+        /**
+         * Time spent in this entry's own factory (dependencies excluded), or -1 if not built yet.
+         */
+        public long getInitNanos() {
+            return initNanos;
+        }
+
+        public String getInitThread() {
+            return initThread;
+        }
+    }
+
+    private final List<Entry<?>> entries = new ArrayList<>();
+
+    public synchronized <T> Entry<T> register(String name, Supplier<T> factory, Entry<?>... dependencies) {
+        for (Entry<?> dependency : dependencies) {
+            if (!entries.contains(dependency)) {
+                throw new IllegalArgumentException(name + " depends on " + dependency.name
+                        + ", which is not registered here");
+            }
+        }
+        Entry<T> entry = new Entry<>(name, factory, dependencies.clone());
+        entries.add(entry);
+        return entry;
+    }
+
+    public synchronized List<Entry<?>> getEntries() {
+        return new ArrayList<>(entries);
+    }
+
+    public CompletableFuture<Void> warmUp() {
+        return warmUp(ForkJoinPool.commonPool());
+    }
+
+    /**
+     * Builds every entry on the executor, each one as soon as all of its dependencies are built.
+     * The future fails with the first factory exception; unaffected entries are still built.
+     */
+    public CompletableFuture<Void> warmUp(Executor executor) {
+        List<Entry<?>> snapshot = getEntries();
+        // registration order is a topological order, so dependencies always have their futures already
+        List<CompletableFuture<Void>> futures = new ArrayList<>(snapshot.size());
+        for (Entry<?> entry : snapshot) {
+            CompletableFuture<?>[] before = new CompletableFuture<?>[entry.dependencies.length];
+            for (int i = 0; i < before.length; i++) {
+                before[i] = futures.get(snapshot.indexOf(entry.dependencies[i]));
+            }
+            futures.add(CompletableFuture.allOf(before).thenRunAsync(entry::get, executor));
+        }
+        return CompletableFuture.allOf(futures.toArray(new CompletableFuture<?>[0]));
+    }
+}
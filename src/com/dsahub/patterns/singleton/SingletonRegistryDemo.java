@@ -0,0 +1,60 @@
+package com.dsahub.patterns.singleton;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Five heavy singletons (config -> {database, cache, templates} -> catalog). Built lazily, the first request pays
+ * for all of them one after another; warmed up through SingletonRegistry, the independent ones are built in
+ * parallel at startup and the first request is a plain field read.
+ */
+public class SingletonRegistryDemo {
+
+    static class Heavy {
+        final String name;
+
+        Heavy(String name, long millis) {
+            this.name = name;
+            // stands in for parsing, connecting, compiling...
+            try {
+                Thread.sleep(millis);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+
+    public static void main(String[] args) throws Exception {
+        System.out.println("-- lazy: first request builds everything");
+        SingletonRegistry lazy = registry();
+        long start = System.nanoTime();
+        lazy.getEntries().get(4).get();
+        System.out.printf("first request took %d ms%n", TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start));
+
+        System.out.println("-- warmed up at startup");
+        SingletonRegistry warm = registry();
+        start = System.nanoTime();
+        warm.warmUp().join();
+        System.out.printf("warm-up took %d ms%n", TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start));
+        start = System.nanoTime();
+        warm.getEntries().get(4).get();
+        System.out.printf("first request took %d us%n", TimeUnit.NANOSECONDS.toMicros(System.nanoTime() - start));
+        for (SingletonRegistry.Entry<?> entry : warm.getEntries()) {
+            System.out.printf("  %-10s %4d ms on %s%n", entry.getName(),
+                    TimeUnit.NANOSECONDS.toMillis(entry.getInitNanos()), entry.getInitThread());
+        }
+    }
+
+    private static SingletonRegistry registry() {
+        SingletonRegistry registry = new SingletonRegistry();
+        SingletonRegistry.Entry<Heavy> config =
+                registry.register("config", () -> new Heavy("config", 100));
+        SingletonRegistry.Entry<Heavy> database =
+                registry.register("database", () -> new Heavy("database", 300), config);
+        SingletonRegistry.Entry<Heavy> cache =
+                registry.register("cache", () -> new Heavy("cache", 250), config);
+        SingletonRegistry.Entry<Heavy> templates =
+                registry.register("templates", () -> new Heavy("templates", 200), config);
+        registry.register("catalog", () -> new Heavy("catalog", 100), database, cache, templates);
+        return registry;
+    }
+}
@@ -0,0 +1,187 @@
+package com.dsahub.patterns.singleton;
+
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.concurrent.locks.AbstractQueuedSynchronizer;
+import java.util.function.BiFunction;
+import java.util.function.Consumer;
+import java.util.function.ObjLongConsumer;
+import java.util.function.Supplier;
+
+/**
+ * One instance of a mutable, stateful singleton per CPU stripe instead of one shared object, in the way
+ * LongAdder splits a counter: each thread updates the stripe picked by its probe and moves to another stripe
+ * when it finds that one busy, so writers stop queueing on one lock and one cache line.
+ * Reads merge all stripes into a combined view with reduce(). Stripes are created on first use, each padded so
+ * that its lock word and the next stripe's value never share a cache line.
+ * Hold the StripedSingleton itself in a Holder (see SimpleSingletonHolder) to keep it a lazy singleton.
+ */
+public final class StripedSingleton<T> {
+
+    /**
+     * A reentrant lock whose state word lives in the stripe object itself (a ReentrantLock keeps it in a
+     * separate, unpadded Sync object). Subclass fields are laid out after the superclass's, so the padding
+     * follows the lock word and keeps the next object on the heap, typically the next stripe's value,
+     * two cache lines away (the width @Contended uses, covering adjacent-line prefetch).
+     */
+    private static final class Stripe<T> extends AbstractQueuedSynchronizer {
+        private static final long serialVersionUID = 1L;
+
+        final T value;
+        long p00, p01, p02, p03, p04, p05, p06, p07;
+        long p10, p11, p12, p13, p14, p15, p16, p17;
+
+        Stripe(T value) {
+            this.value = value;
+        }
+
+        @Override
+        protected boolean tryAcquire(int acquires) {
+            Thread current = Thread.currentThread();
+            int c = getState();
+            if (c == 0) {
+                if (compareAndSetState(0, acquires)) {
+                    setExclusiveOwnerThread(current);
+                    return true;
+                }
+            } else if (getExclusiveOwnerThread() == current) {
+                setState(c + acquires);
+                return true;
+            }
+            return false;
+        }
+
+        @Override
+        protected boolean tryRelease(int releases) {
+            int c = getState() - releases;
+            boolean free = c == 0;
+            if (free) {
+                setExclusiveOwnerThread(null);
+            }
+            setState(c);
+            return free;
+        }
+
+        boolean tryLock() {
+            return tryAcquire(1);
+        }
+
+        void lock() {
+            acquire(1);
+        }
+
+        void unlock() {
+            release(1);
+        }
+    }
+
+    // a probe per thread, like Thread.threadLocalRandomProbe that LongAdder uses internally
+    private static final ThreadLocal<int[]> PROBE =
+            ThreadLocal.withInitial(() -> new int[]{ThreadLocalRandom.current().nextInt() | 1});
+
+    private static final int MAX_FAILED_TRIES = 3;
+
+    private final Supplier<T> factory;
+    private final AtomicReferenceArray<Stripe<T>> stripes;
+    private final int mask;
+
+    public StripedSingleton(Supplier<T> factory) {
+        this(factory, Runtime.getRuntime().availableProcessors());
+    }
+
+    /**
+     * @param stripes rounded up to a power of two
+     */
+    public StripedSingleton(Supplier<T> factory, int stripes) {
+        if (stripes <= 0) throw new IllegalArgumentException("stripes must be > 0");
+        int size = Integer.highestOneBit(stripes);
+        if (size < stripes) size <<= 1;
+        this.factory = factory;
+        this.stripes = new AtomicReferenceArray<>(size);
+        this.mask = size - 1;
+    }
+
+    public int getStripeCount() {
+        return mask + 1;
+    }
+
+    /**
+     * Runs the update on this thread's stripe, holding that stripe's lock.
+     */
+    public void update(Consumer<? super T> update) {
+        Stripe<T> stripe = lockStripe();
+        try {
+            update.accept(stripe.value);
+        } finally {
+            stripe.unlock();
+        }
+    }
+
+    /**
+     * Like update(Consumer), but hands the argument through, so a hot path can pass one static lambda instead of
+     * allocating a capturing one per call.
+     */
+    public void update(long argument, ObjLongConsumer<? super T> update) {
+        Stripe<T> stripe = lockStripe();
+        try {
+            update.accept(stripe.value, argument);
+        } finally {
+            stripe.unlock();
+        }
+    }
+
+    private Stripe<T> lockStripe() {
+        int[] probe = PROBE.get();
+        int h = probe[0];
+        for (int tries = 0; ; tries++) {
+            Stripe<T> stripe = stripe(h & mask);
+            if (tries >= MAX_FAILED_TRIES) {
+                stripe.lock();
+            } else if (!stripe.tryLock()) {
+                // contended: move this thread to another stripe for this and later updates
+                h ^= h << 13;
+                h ^= h >>> 17;
+                h ^= h << 5;
+                probe[0] = h;
+                continue;
+            }
+            return stripe;
+        }
+    }
+
+    /**
+     * Folds every stripe into one result; each stripe is read under its lock, so the view is consistent per
+     * stripe but not a snapshot across stripes while writers are running.
+     */
+    public <R> R reduce(R identity, BiFunction<R, ? super T, R> accumulator) {
+        R result = identity;
+        for (int i = 0; i <= mask; i++) {
+            Stripe<T> stripe = stripes.get(i);
+            if (stripe == null) continue;
+            stripe.lock();
+            try {
+                result = accumulator.apply(result, stripe.value);
+            } finally {
+                stripe.unlock();
+            }
+        }
+        return result;
+    }
+
+    public void forEach(Consumer<? super T> action) {
+        reduce(null, (unused, value) -> {
+            action.accept(value);
+            return null;
+        });
+    }
+
+    private Stripe<T> stripe(int index) {
+        Stripe<T> stripe = stripes.get(index);
+        if (stripe == null) {
+            // two threads may race to create a stripe; the loser's instance is dropped unused
+            Stripe<T> created = new Stripe<>(factory.get());
+            stripe = stripes.compareAndSet(index, null, created) ? created : stripes.get(index);
+        }
+        return stripe;
+    }
+}
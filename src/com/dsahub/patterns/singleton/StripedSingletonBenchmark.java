@@ -0,0 +1,168 @@
+package com.dsahub.patterns.singleton;
+
+import java.util.concurrent.CyclicBarrier;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.function.ObjLongConsumer;
+
+/**
+ * Write-heavy stateful singleton (request count, bytes and a latency histogram) updated from 1..N threads,
+ * three ways: a holder singleton with atomic fields, a holder singleton with synchronized methods, and a
+ * StripedSingleton. Every run checks the merged totals against the number of updates made.
+ * Usage: StripedSingletonBenchmark [threads=1,2,4,8] [millis=1000] [rounds=3]
+ */
+public class StripedSingletonBenchmark {
+
+    private static final int BUCKETS = 16;
+
+    interface Stats {
+        void record(int bytes, int bucket);
+
+        long requests();
+    }
+
+    // one shared instance, lock-free fields that every thread still writes to
+    static final class AtomicStats implements Stats {
+        private final AtomicLong requests = new AtomicLong();
+        private final AtomicLong bytes = new AtomicLong();
+        private final AtomicLongArray buckets = new AtomicLongArray(BUCKETS);
+
+        private static class Holder {
+            private static final AtomicStats INSTANCE = new AtomicStats();
+        }
+
+        @Override
+        public void record(int bytes, int bucket) {
+            requests.incrementAndGet();
+            this.bytes.addAndGet(bytes);
+            buckets.incrementAndGet(bucket);
+        }
+
+        @Override
+        public long requests() {
+            return requests.get();
+        }
+    }
+
+    // one shared instance, one lock
+    static final class SynchronizedStats implements Stats {
+        private long requests;
+        private long bytes;
+        private final long[] buckets = new long[BUCKETS];
+
+        private static class Holder {
+            private static final SynchronizedStats INSTANCE = new SynchronizedStats();
+        }
+
+        @Override
+        public synchronized void record(int bytes, int bucket) {
+            requests++;
+            this.bytes += bytes;
+            buckets[bucket]++;
+        }
+
+        @Override
+        public synchronized long requests() {
+            return requests;
+        }
+    }
+
+    // plain state, one copy per stripe
+    static final class RequestStats {
+        long requests;
+        long bytes;
+        final long[] buckets = new long[BUCKETS];
+    }
+
+    static final class StripedStats implements Stats {
+        // bytes in the high half, bucket in the low half, so the update lambda captures nothing
+        private static final ObjLongConsumer<RequestStats> RECORD = (s, packed) -> {
+            s.requests++;
+            s.bytes += packed >>> 32;
+            s.buckets[(int) packed]++;
+        };
+
+        private final StripedSingleton<RequestStats> stripes = new StripedSingleton<>(RequestStats::new);
+
+        private static class Holder {
+            private static final StripedStats INSTANCE = new StripedStats();
+        }
+
+        @Override
+        public void record(int bytes, int bucket) {
+            stripes.update((long) bytes << 32 | bucket, RECORD);
+        }
+
+        @Override
+        public long requests() {
+            return stripes.reduce(0L, (sum, s) -> sum + s.requests);
+        }
+    }
+
+    public static void main(String[] args) throws Exception {
+        String[] threadCounts = (args.length > 0 ? args[0] : "1,2,4,8").split(",");
+        long millis = args.length > 1 ? Long.parseLong(args[1]) : 1000;
+        int rounds = args.length > 2 ? Integer.parseInt(args[2]) : 3;
+        Stats[] variants = {AtomicStats.Holder.INSTANCE, SynchronizedStats.Holder.INSTANCE,
+                StripedStats.Holder.INSTANCE};
+        String[] names = {"holder+atomics", "synchronized", "striped"};
+
+        System.out.printf("%-15s %8s %14s %10s%n", "variant", "threads", "updates/s", "ns/update");
+        for (String t : threadCounts) {
+            int threads = Integer.parseInt(t.trim());
+            for (int v = 0; v < variants.length; v++) {
+                double best = 0;
+                // the first rounds warm up the JIT; report the best
+                for (int r = 0; r < rounds; r++) {
+                    best = Math.max(best, run(variants[v], threads, millis));
+                }
+                System.out.printf("%-15s %8d %14.0f %10.1f%n", names[v], threads, best, threads * 1e9 / best);
+            }
+        }
+    }
+
+    private static double run(Stats stats, int threads, long millis) throws Exception {
+        long before = stats.requests();
+        CyclicBarrier barrier = new CyclicBarrier(threads + 1);
+        AtomicBoolean stop = new AtomicBoolean();
+        long[] counts = new long[threads];
+        Thread[] workers = new Thread[threads];
+        for (int i = 0; i < threads; i++) {
+            int id = i;
+            workers[i] = new Thread(() -> {
+                ThreadLocalRandom random = ThreadLocalRandom.current();
+                long n = 0;
+                try {
+                    barrier.await();
+                } catch (Exception e) {
+                    return;
+                }
+                while (!stop.get()) {
+                    for (int j = 0; j < 256; j++) {
+                        stats.record(random.nextInt(1, 4096), random.nextInt(BUCKETS));
+                    }
+                    n += 256;
+                }
+                counts[id] = n;
+            });
+            workers[i].start();
+        }
+        barrier.await();
+        long start = System.nanoTime();
+        Thread.sleep(millis);
+        stop.set(true);
+        long total = 0;
+        for (int i = 0; i < threads; i++) {
+            workers[i].join();
+            total += counts[i];
+        }
+        long elapsed = System.nanoTime() - start;
+        long recorded = stats.requests() - before;
+        if (recorded != total) {
+            throw new IllegalStateException("lost updates: made " + total + ", recorded " + recorded);
+        }
+        return total * 1e9 / elapsed;
+    }
+}
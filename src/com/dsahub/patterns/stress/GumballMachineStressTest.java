@@ -0,0 +1,119 @@
+package com.dsahub.patterns.stress;
+
+import com.dsahub.patterns.proxy.remote.GumballCore;
+import com.dsahub.patterns.proxy.remote.GumballMachine;
+
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.lang.reflect.Field;
+import java.rmi.server.UnicastRemoteObject;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Two customers each insert a quarter and turn the crank on the same remote GumballMachine at once.
+ * The machine reports what it does only through System.out, so the output is captured and counted:
+ * a quarter accepted, a gumball released. Forbidden outcomes are a lost decrement (gumballs released
+ * != inventory drop), a free gumball (more gumballs than quarters), a swallowed quarter (a quarter accepted
+ * and neither served nor still pending) and any state outside the machine's state set, or one that disagrees
+ * with the inventory. Exit code 1 if a forbidden outcome was seen.
+ * Usage: GumballMachineStressTest [trials=50000]
+ */
+public class GumballMachineStressTest {
+
+    private static final String LOCATION = "stress";
+    private static final String QUARTER_ACCEPTED = LOCATION + ": Quarter inserted.";
+    private static final String GUMBALL_RELEASED = LOCATION + ": A gumball comes rolling out...";
+
+    /**
+     * Counts lines instead of printing them; println is called concurrently by the actors.
+     */
+    private static final class LineCounter extends PrintStream {
+        final Map<String, Integer> counts = new ConcurrentHashMap<>();
+
+        LineCounter() {
+            super(OutputStream.nullOutputStream());
+        }
+
+        @Override
+        public void println(String line) {
+            counts.merge(line, 1, Integer::sum);
+        }
+
+        int take(String line) {
+            Integer n = counts.remove(line);
+            return n == null ? 0 : n;
+        }
+    }
+
+    public static void main(String[] args) throws Exception {
+        int trials = args.length > 0 ? Integer.parseInt(args[0]) : 50000;
+        PrintStream console = System.out;
+        LineCounter output = new LineCounter();
+        // one exported machine, reset between trials; exporting one per trial would leak RMI objects
+        GumballMachine machine = new GumballMachine(LOCATION, 1);
+        long forbidden = 0;
+        try {
+            System.setOut(output);
+            forbidden += run(console, "last gumball", machine, output, 1, trials);
+            forbidden += run(console, "full machine", machine, output, 100, trials);
+        } finally {
+            System.setOut(console);
+            UnicastRemoteObject.unexportObject(machine, true);
+        }
+        System.exit(forbidden == 0 ? 0 : 1);
+    }
+
+    private static long run(PrintStream console, String name, GumballMachine machine, LineCounter output,
+                            int inventory, int trials) throws Exception {
+        Field core = GumballMachine.class.getDeclaredField("core");
+        core.setAccessible(true);
+        StressHarness.StressTest<GumballMachine> test = new StressHarness.StressTest<GumballMachine>() {
+            @Override
+            public GumballMachine newState() throws Exception {
+                core.set(machine, new GumballCore(inventory));
+                output.counts.clear();
+                return machine;
+            }
+
+            @Override
+            public int actors() {
+                return 2;
+            }
+
+            @Override
+            public void actor(int index, GumballMachine m) throws Exception {
+                m.insertQuarter();
+                m.turnCrank();
+            }
+
+            @Override
+            public StressHarness.Outcome arbiter(GumballMachine m) throws Exception {
+                int quarters = output.take(QUARTER_ACCEPTED);
+                int gumballs = output.take(GUMBALL_RELEASED);
+                int left = m.getCount();
+                String s = m.getState();
+                String description = "quarters=" + quarters + " gumballs=" + gumballs + " left=" + left
+                        + " state=" + s;
+                boolean pending = s.equals("HasQuarterState");
+                String violation = null;
+                if (inventory - left != gumballs) {
+                    violation = "lost decrement";
+                } else if (gumballs > quarters) {
+                    violation = "free gumball";
+                } else if (quarters > gumballs + (pending ? 1 : 0)) {
+                    violation = "swallowed quarter";
+                } else if (!s.equals("NoQuarterState") && !pending && !s.equals("SoldOutState")) {
+                    violation = "illegal state";
+                } else if ((left == 0) != s.equals("SoldOutState")) {
+                    violation = "state disagrees with inventory";
+                }
+                return violation == null
+                        ? StressHarness.Outcome.of(description, StressHarness.Expect.ACCEPTABLE)
+                        : StressHarness.Outcome.of(description + " (" + violation + ")",
+                        StressHarness.Expect.FORBIDDEN);
+            }
+        };
+        return StressHarness.run("GumballMachine " + name, test, trials, console);
+    }
+}
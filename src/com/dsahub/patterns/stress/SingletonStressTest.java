@@ -0,0 +1,73 @@
+package com.dsahub.patterns.stress;
+
+import com.dsahub.patterns.singleton.SimpleSingletonDoubleCheckLocking;
+import com.dsahub.patterns.singleton.SimpleSingletonLazy;
+import com.dsahub.patterns.singleton.SimpleSingletonSynchronised;
+
+import java.lang.reflect.Field;
+import java.util.IdentityHashMap;
+import java.util.Map;
+import java.util.function.Supplier;
+
+/**
+ * Races the first getInstance() calls of the lazily created singletons: each trial clears the static instance
+ * field (by reflection) and lets several threads ask for it at once. More than one distinct instance is forbidden,
+ * except for SimpleSingletonLazy, which is documented as unsafe; there it is the interesting outcome.
+ * The holder, eager and enum variants are created by class initialization and cannot be reset, so they are
+ * not raced here. Exit code 1 if a forbidden outcome was seen.
+ * Usage: SingletonStressTest [trials=100000] [actors=4]
+ */
+public class SingletonStressTest {
+
+    public static void main(String[] args) throws Exception {
+        int trials = args.length > 0 ? Integer.parseInt(args[0]) : 100000;
+        int actors = args.length > 1 ? Integer.parseInt(args[1]) : 4;
+        long forbidden = 0;
+        forbidden += StressHarness.run("SimpleSingletonLazy",
+                test(SimpleSingletonLazy.class, SimpleSingletonLazy::getInstance, actors, true), trials);
+        forbidden += StressHarness.run("SimpleSingletonSynchronised",
+                test(SimpleSingletonSynchronised.class, SimpleSingletonSynchronised::getInstance, actors, false),
+                trials);
+        forbidden += StressHarness.run("SimpleSingletonDoubleCheckLocking",
+                test(SimpleSingletonDoubleCheckLocking.class, SimpleSingletonDoubleCheckLocking::getInstance,
+                        actors, false), trials);
+        System.exit(forbidden == 0 ? 0 : 1);
+    }
+
+    private static StressHarness.StressTest<Object[]> test(Class<?> type, Supplier<Object> getInstance,
+                                                           int actors, boolean documentedUnsafe) throws Exception {
+        Field instance = type.getDeclaredField("instance");
+        instance.setAccessible(true);
+        return new StressHarness.StressTest<Object[]>() {
+            @Override
+            public Object[] newState() throws Exception {
+                instance.set(null, null);
+                return new Object[actors];
+            }
+
+            @Override
+            public int actors() {
+                return actors;
+            }
+
+            @Override
+            public void actor(int index, Object[] seen) {
+                seen[index] = getInstance.get();
+            }
+
+            @Override
+            public StressHarness.Outcome arbiter(Object[] seen) {
+                Map<Object, Boolean> distinct = new IdentityHashMap<>();
+                for (Object o : seen) {
+                    distinct.put(o, Boolean.TRUE);
+                }
+                int n = distinct.size();
+                if (n == 1) {
+                    return StressHarness.Outcome.of("1 instance", StressHarness.Expect.ACCEPTABLE);
+                }
+                return StressHarness.Outcome.of(n + " instances", documentedUnsafe
+                        ? StressHarness.Expect.ACCEPTABLE_INTERESTING : StressHarness.Expect.FORBIDDEN);
+            }
+        };
+    }
+}
@@ -0,0 +1,123 @@
+package com.dsahub.patterns.stress;
+
+import java.io.PrintStream;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.BrokenBarrierException;
+import java.util.concurrent.CyclicBarrier;
+
+/**
+ * A small jcstress-style runner: every trial gets fresh state, releases all actors at once from a barrier,
+ * lets an arbiter look at the result after they finish, and counts how often each outcome occurs.
+ * Outcomes are graded like jcstress (acceptable, acceptable but interesting, forbidden), so a racy
+ * implementation shows up as a non-zero forbidden count instead of as a rare production bug.
+ * Actor threads are reused across trials; only the state is new.
+ */
+public final class StressHarness {
+
+    public enum Expect {
+        ACCEPTABLE,
+        ACCEPTABLE_INTERESTING,
+        FORBIDDEN
+    }
+
+    public static final class Outcome {
+        private final String description;
+        private final Expect expect;
+
+        private Outcome(String description, Expect expect) {
+            this.description = description;
+            this.expect = expect;
+        }
+
+        public static Outcome of(String description, Expect expect) {
+            return new Outcome(description, expect);
+        }
+    }
+
+    public interface StressTest<S> {
+        S newState() throws Exception;
+
+        int actors();
+
+        void actor(int index, S state) throws Exception;
+
+        Outcome arbiter(S state) throws Exception;
+    }
+
+    private StressHarness() {
+    }
+
+    public static <S> long run(String name, StressTest<S> test, int trials) throws Exception {
+        return run(name, test, trials, System.out);
+    }
+
+    /**
+     * Prints the outcome table to {@code report}.
+     * @return the number of trials with a forbidden outcome
+     */
+    public static <S> long run(String name, StressTest<S> test, int trials, PrintStream report) throws Exception {
+        int actors = test.actors();
+        CyclicBarrier start = new CyclicBarrier(actors + 1);
+        CyclicBarrier end = new CyclicBarrier(actors + 1);
+        Object[] state = new Object[1];
+        Throwable[] failure = new Throwable[1];
+        Thread[] threads = new Thread[actors];
+        for (int i = 0; i < actors; i++) {
+            int index = i;
+            threads[i] = new Thread(() -> runActor(test, index, trials, start, end, state, failure),
+                    name + "-actor-" + i);
+            threads[i].setDaemon(true);
+            threads[i].start();
+        }
+
+        Map<String, long[]> counts = new TreeMap<>();
+        Map<String, Expect> expectations = new TreeMap<>();
+        long begin = System.nanoTime();
+        for (int t = 0; t < trials; t++) {
+            // barrier awaits publish the state to the actors and their writes back to the arbiter
+            state[0] = test.newState();
+            start.await();
+            end.await();
+            synchronized (failure) {
+                if (failure[0] != null) throw new IllegalStateException("actor failed", failure[0]);
+            }
+            @SuppressWarnings("unchecked")
+            Outcome outcome = test.arbiter((S) state[0]);
+            counts.computeIfAbsent(outcome.description, k -> new long[1])[0]++;
+            expectations.put(outcome.description, outcome.expect);
+        }
+        long millis = (System.nanoTime() - begin) / 1_000_000;
+
+        long forbidden = 0;
+        report.printf("%s: %d trials, %d actors, %d ms%n", name, trials, actors, millis);
+        for (Map.Entry<String, long[]> e : counts.entrySet()) {
+            Expect expect = expectations.get(e.getKey());
+            if (expect == Expect.FORBIDDEN) forbidden += e.getValue()[0];
+            report.printf("  %12d  %-22s %s%n", e.getValue()[0], expect, e.getKey());
+        }
+        report.println(forbidden == 0 ? "  OK" : "  FAILED: " + forbidden + " forbidden outcomes");
+        return forbidden;
+    }
+
+    private static <S> void runActor(StressTest<S> test, int index, int trials, CyclicBarrier start,
+                                     CyclicBarrier end, Object[] state, Throwable[] failure) {
+        for (int t = 0; t < trials; t++) {
+            try {
+                start.await();
+                try {
+                    @SuppressWarnings("unchecked")
+                    S s = (S) state[0];
+                    test.actor(index, s);
+                } catch (Exception | Error e) {
+                    synchronized (failure) {
+                        failure[0] = e;
+                    }
+                }
+                end.await();
+            } catch (InterruptedException | BrokenBarrierException e) {
+                return;
+            }
+        }
+    }
+}